@@ -0,0 +1,14 @@
+/**
+ * Vectorized weighted sums for compiled networks. With this module present,
+ * {@link network.SumKernels#preferred()} picks its kernel unless the
+ * {@code neatj.kernel} system property is set to {@code scalar}.
+ */
+module neatj.vector
+{
+	exports network.vector;
+
+	requires neatj;
+	requires jdk.incubator.vector;
+
+	provides network.SumKernel with network.vector.VectorSumKernel;
+}
@@ -0,0 +1,68 @@
+package network.vector;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import network.SumKernel;
+
+/**
+ * Sums with the widest vectors the platform supports. Neurons with a high
+ * fan-in are summed a vector at a time: their sources are loaded as one block
+ * when they are consecutive, as with the inputs of a fully connected network,
+ * and gathered otherwise. Neurons with few connections are summed in order,
+ * like the scalar kernel. Vector sums add the products in a different order,
+ * so results can differ from the scalar kernel in the last bits.
+ */
+public class VectorSumKernel implements SumKernel
+{
+	private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+	// below this many connections, setting up vectors costs more than it saves
+	private static final int THRESHOLD = 2 * SPECIES.length();
+
+	@Override
+	public String name()
+	{
+		return "vector";
+	}
+
+	@Override
+	public double sum(double[] values, int[] sources, double[] weights, int from, int to)
+	{
+		if(to - from < THRESHOLD)
+		{
+			return scalarSum(values, sources, weights, from, to);
+		}
+		var bound = from + SPECIES.loopBound(to - from);
+		var sums = DoubleVector.zero(SPECIES);
+		// sources are strictly increasing, so this means they are consecutive
+		if(sources[to - 1] - sources[from] == to - from - 1)
+		{
+			var offset = sources[from] - from;
+			for(var edge = from; edge < bound; edge += SPECIES.length())
+			{
+				sums = DoubleVector.fromArray(SPECIES, values, offset + edge)
+					.fma(DoubleVector.fromArray(SPECIES, weights, edge), sums);
+			}
+		}
+		else
+		{
+			for(var edge = from; edge < bound; edge += SPECIES.length())
+			{
+				sums = DoubleVector.fromArray(SPECIES, values, 0, sources, edge)
+					.fma(DoubleVector.fromArray(SPECIES, weights, edge), sums);
+			}
+		}
+		return sums.reduceLanes(VectorOperators.ADD) + scalarSum(values, sources, weights, bound, to);
+	}
+
+	private static double scalarSum(double[] values, int[] sources, double[] weights, int from,
+		int to)
+	{
+		var sum = 0d;
+		for(var edge = from; edge < to; edge++)
+		{
+			sum += values[sources[edge]] * weights[edge];
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,63 @@
+package test;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import network.CompiledNetwork;
+import network.SumKernels;
+import network.vector.VectorSumKernel;
+
+public class VectorSumKernelTest
+{
+	@Test
+	public void testMatchesScalar()
+	{
+		var random = new Random(1);
+		var vector = new VectorSumKernel();
+		var scalar = SumKernels.scalar();
+		var values = new double[500];
+		for(var i = 0; i < values.length; i++)
+		{
+			values[i] = random.nextDouble() * 2 - 1;
+		}
+		for(var length = 0; length < 100; length++)
+		{
+			var sources = new int[length];
+			var weights = new double[length];
+			// consecutive sources for even lengths, gathered ones otherwise
+			var source = random.nextInt(100);
+			for(var i = 0; i < length; i++)
+			{
+				source += length % 2 == 0 ? 1 : 1 + random.nextInt(3);
+				sources[i] = source;
+				weights[i] = random.nextGaussian();
+			}
+			Assertions.assertEquals(scalar.sum(values, sources, weights, 0, length),
+				vector.sum(values, sources, weights, 0, length), 1e-12);
+		}
+	}
+
+	@Test
+	public void testFullyConnected()
+	{
+		var random = new Random(2);
+		var scalar = CompiledNetwork.builder().withInputs(64).withOutputs(4).withBiases(1)
+			.withKernel(SumKernels.scalar());
+		var vector = CompiledNetwork.builder().withInputs(64).withOutputs(4).withBiases(1)
+			.withKernel(SumKernels.forName("vector"));
+		for(var output = 64; output < 68; output++)
+		{
+			for(var input = 0; input < 64; input++)
+			{
+				var weight = random.nextGaussian() * 0.1;
+				scalar.withConnection(input, output, weight);
+				vector.withConnection(input, output, weight);
+			}
+		}
+		var inputs = random.doubles(64).toArray();
+		Assertions.assertArrayEquals(scalar.build().evaluate(inputs), vector.build().evaluate(inputs),
+			1e-12);
+	}
+}
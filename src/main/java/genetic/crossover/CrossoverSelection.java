@@ -75,6 +75,16 @@ public class CrossoverSelection<T extends Individual> extends SelectionMethod<T>
 		this.secondSelector.reset();
 	}
 
+	@Override
+	public <R extends Number & Comparable<R>> void prepare(List<Evaluation<T, R>> ranked)
+	{
+		this.firstSelector.prepare(ranked);
+		if(this.secondSelector != this.firstSelector)
+		{
+			this.secondSelector.prepare(ranked);
+		}
+	}
+
 	@Override
 	public <R extends Number & Comparable<R>> T selectIndividual(List<Evaluation<T, R>> ranked)
 	{
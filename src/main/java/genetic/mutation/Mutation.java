@@ -1,14 +1,14 @@
 package genetic.mutation;
 
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.UnaryOperator;
+import java.util.random.RandomGenerator;
 
 import genetic.Individual;
+import utils.RandomSource;
 
 public class Mutation<T extends Individual>
 {
-	protected static final Random random = ThreadLocalRandom.current();
+	protected static final RandomGenerator random = RandomSource.shared();
 	private double probability;
 	private UnaryOperator<T> mutation;
 	
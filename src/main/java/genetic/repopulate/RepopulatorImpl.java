@@ -1,17 +1,17 @@
 package genetic.repopulate;
 
 import java.util.ArrayList;
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Function;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collector;
 
 import genetic.Individual;
 import genetic.Population;
+import utils.RandomSource;
 
 public abstract class RepopulatorImpl<T extends Individual> implements Repopulator<T>
 {
-	protected static final Random random = ThreadLocalRandom.current();
+	protected static final RandomGenerator random = RandomSource.shared();
 	protected Function<T, T> copier;
 	
 	public RepopulatorImpl(Function<T, T> copyFunc)
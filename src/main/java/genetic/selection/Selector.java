@@ -1,7 +1,6 @@
 package genetic.selection;
 
 import java.util.ArrayDeque;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 
@@ -13,6 +12,7 @@ public class Selector<T extends Individual> extends SelectionMethod<T>
 {
 	private Queue<SelectionMethod<T>> methods;
 	private Queue<SelectionMethod<T>> complete = new ArrayDeque<>();
+	private boolean prepared;
 
 	/**
 	 * @return A {@link Selector} with the given {@link SelectionMethod SelectionMethod(s)}
@@ -36,6 +36,12 @@ public class Selector<T extends Individual> extends SelectionMethod<T>
 
 	@Override
 	public void reset()
+	{
+		this.restart();
+		this.prepared = false;
+	}
+
+	private void restart()
 	{
 		while(!this.methods.isEmpty())
 		{
@@ -46,6 +52,14 @@ public class Selector<T extends Individual> extends SelectionMethod<T>
 		this.methods.forEach(SelectionMethod::reset);
 	}
 
+	@Override
+	public <R extends Number & Comparable<R>> void prepare(List<Evaluation<T, R>> ranked)
+	{
+		this.methods.forEach(method -> method.prepare(ranked));
+		this.complete.forEach(method -> method.prepare(ranked));
+		this.prepared = true;
+	}
+
 	/**
 	 * @param <R> Result of evaluations
 	 * @param ranked A list of evaluated individuals, sorted in descending order of evaluation
@@ -61,10 +75,15 @@ public class Selector<T extends Individual> extends SelectionMethod<T>
 			selector = this.methods.peek();
 			if(selector == null)
 			{
-				reset();
+				// starting over must not drop what the methods prepared
+				this.restart();
+				if(this.prepared)
+				{
+					this.methods.forEach(method -> method.prepare(ranked));
+				}
 				selector = this.methods.peek();
 			}
 		}
-		return selector.select(new ArrayList<>(ranked));
+		return selector.select(ranked);
 	}
 }
@@ -0,0 +1,79 @@
+package genetic.selection.method;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Picks indices in proportion to their weights in constant time, with
+ * Walker's alias method as laid out by Vose. Each column holds the chance of
+ * picking its own index and the index picked otherwise.
+ */
+final class AliasTable
+{
+	private final double[] probability;
+	private final int[] alias;
+
+	AliasTable(double[] weights)
+	{
+		var size = weights.length;
+		this.probability = new double[size];
+		this.alias = new int[size];
+		var sum = 0d;
+		for(var weight : weights)
+		{
+			sum += weight;
+		}
+		var scaled = new double[size];
+		var small = new int[size];
+		var large = new int[size];
+		var smalls = 0;
+		var larges = 0;
+		for(var index = 0; index < size; index++)
+		{
+			scaled[index] = weights[index] * size / sum;
+			if(scaled[index] < 1)
+			{
+				small[smalls++] = index;
+			}
+			else
+			{
+				large[larges++] = index;
+			}
+		}
+		while(smalls > 0 && larges > 0)
+		{
+			var less = small[--smalls];
+			var more = large[--larges];
+			this.probability[less] = scaled[less];
+			this.alias[less] = more;
+			scaled[more] += scaled[less] - 1;
+			if(scaled[more] < 1)
+			{
+				small[smalls++] = more;
+			}
+			else
+			{
+				large[larges++] = more;
+			}
+		}
+		// whatever is left is full, up to rounding
+		while(larges > 0)
+		{
+			this.probability[large[--larges]] = 1;
+		}
+		while(smalls > 0)
+		{
+			this.probability[small[--smalls]] = 1;
+		}
+	}
+
+	int size()
+	{
+		return this.probability.length;
+	}
+
+	int sample(RandomGenerator random)
+	{
+		var column = random.nextInt(this.probability.length);
+		return random.nextDouble() < this.probability[column] ? column : this.alias[column];
+	}
+}
@@ -1,8 +1,8 @@
 package genetic.selection.method;
 
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.stream.IntStream;
 
 import genetic.Individual;
 import genetic.evaluate.Evaluation;
@@ -19,17 +19,20 @@ public class RankSelection<T extends Individual> extends RouletteSelection<T>
 		super(iterations);
 	}
 
+	/**
+	 * @return The rank of each individual, in order, from 1 for the least
+	 *         result, with ties ranked in order
+	 */
 	@Override
-	public <R extends Number & Comparable<R>> T selectIndividual(List<Evaluation<T, R>> ranked)
+	protected <R extends Number & Comparable<R>> double[] weights(List<Evaluation<T, R>> ranked)
 	{
-		var sorted = new ArrayList<>(ranked); // we don't want to alter our inputs
-		sorted.sort(Comparator.comparing(Evaluation::result));
-		var altered = new ArrayList<Evaluation<T, Double>>();
-		double rank = 0;
-		for(var eval : sorted)
+		var order = IntStream.range(0, ranked.size()).boxed()
+			.sorted(Comparator.comparing(index -> ranked.get(index).result())).toList();
+		var weights = new double[ranked.size()];
+		for(var rank = 0; rank < weights.length; rank++)
 		{
-			altered.add(new Evaluation<>(eval.individual(), ++rank));
+			weights[order.get(rank)] = rank + 1;
 		}
-		return super.selectIndividual(altered);
+		return weights;
 	}
 }
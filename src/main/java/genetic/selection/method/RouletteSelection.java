@@ -1,14 +1,15 @@
 package genetic.selection.method;
 
-import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 import genetic.Individual;
 import genetic.evaluate.Evaluation;
 
 public class RouletteSelection<T extends Individual> extends SelectionMethod<T>
 {
+	// built by prepare, holding no reference to the list it was built for
+	private AliasTable table;
+
 	public RouletteSelection()
 	{
 		super();
@@ -19,23 +20,58 @@ public class RouletteSelection<T extends Individual> extends SelectionMethod<T>
 		super(iterations);
 	}
 	
+	/**
+	 * Builds an alias table from the list, to pick from it in constant time
+	 * until the next prepare or reset
+	 */
+	@Override
+	public <R extends Number & Comparable<R>> void prepare(List<Evaluation<T, R>> ranked)
+	{
+		super.prepare(ranked);
+		this.table = new AliasTable(weights(ranked));
+	}
+
+	/**
+	 * Picks from the prepared alias table, or from one built for this list
+	 * alone if none is prepared
+	 */
 	@Override
 	public <R extends Number & Comparable<R>> T selectIndividual(List<Evaluation<T, R>> ranked)
 	{
-		var converted = ranked.stream().map(eval -> new Evaluation<>(eval.individual(), eval.result().doubleValue())).collect(Collectors.toList());
-		var least = converted.stream().min(Comparator.comparing(Evaluation::result)).get().result();
-		if(least < 0)
-			converted = converted.stream().map(eval -> new Evaluation<>(eval.individual(), eval.result() - least + 1.0)).collect(Collectors.toList());
-		else if(least == 0d)
-			converted = converted.stream().map(eval -> new Evaluation<>(eval.individual(), eval.result() + 1.0)).collect(Collectors.toList());
-		var sum = converted.stream().collect(Collectors.summingDouble(Evaluation::result));
-		var differentiator = random.nextDouble() * sum;
-		for(var eval : converted)
+		var table = this.table == null ? new AliasTable(weights(ranked)) : this.table;
+		if(table.size() != ranked.size())
+		{
+			throw new IllegalStateException("Prepared for %s individuals, but given %s!"
+				.formatted(table.size(), ranked.size()));
+		}
+		return ranked.get(table.sample(random)).individual();
+	}
+
+	/**
+	 * @return The weight of each individual, in order: its result, shifted so
+	 *         that the least one is at least 1 if it isn't positive
+	 */
+	protected <R extends Number & Comparable<R>> double[] weights(List<Evaluation<T, R>> ranked)
+	{
+		var weights = new double[ranked.size()];
+		var least = Double.POSITIVE_INFINITY;
+		for(var index = 0; index < weights.length; index++)
+		{
+			weights[index] = ranked.get(index).result().doubleValue();
+			least = Math.min(least, weights[index]);
+		}
+		var shift = least < 0 ? 1 - least : least == 0 ? 1 : 0;
+		for(var index = 0; index < weights.length; index++)
 		{
-			differentiator -= eval.result();
-			if(differentiator <= 0)
-				return eval.individual();
+			weights[index] += shift;
 		}
-		return converted.get(converted.size() - 1).individual();
+		return weights;
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		this.table = null;
 	}
 }
@@ -1,17 +1,17 @@
 package genetic.selection.method;
 
 import java.util.List;
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
+import java.util.random.RandomGenerator;
 
 import genetic.Individual;
 import genetic.evaluate.Evaluation;
+import utils.RandomSource;
 
 public abstract class SelectionMethod<T extends Individual>
 {
-	protected static final Random random = ThreadLocalRandom.current();
+	protected static final RandomGenerator random = RandomSource.shared();
 	private int iterations;
 	private int currentIteration;
 	protected Supplier<Boolean> checker;
@@ -59,6 +59,18 @@ public abstract class SelectionMethod<T extends Individual>
 		this.currentIteration = 0;
 	}
 
+	/**
+	 * Prepares for selecting from the given list, which the following
+	 * selections must be given until the next prepare or reset. Methods that
+	 * prepare nothing select from whatever list they are given.
+	 * 
+	 * @param <R> Result of evaluations
+	 * @param ranked A list of evaluated individuals, sorted in descending order of evaluation
+	 */
+	public <R extends Number & Comparable<R>> void prepare(List<Evaluation<T, R>> ranked)
+	{
+	}
+
 	public boolean finished()
 	{
 		return this.checker.get();
@@ -12,9 +12,12 @@ open module neatj
 	exports genetic.selection.method;
 	exports neat;
 	exports network;
+	exports network.activation;
 	exports network.neuron;
 	// exports utils in case @Exclude exclusion strategy needs alteration
 	exports utils;
 
 	requires transitive com.google.gson;
+
+	uses network.SumKernel;
 }
\ No newline at end of file
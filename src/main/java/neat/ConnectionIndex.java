@@ -0,0 +1,129 @@
+package neat;
+
+import java.util.Arrays;
+
+/**
+ * Maps connections, packed into a long as {@code from << 32 | to}, to the slot
+ * of their gene in a {@link GeneTable}. Keys live in one open-addressing array
+ * with linear probing, so lookups neither box nor allocate. Removals shift the
+ * following entries back instead of leaving tombstones.
+ */
+final class ConnectionIndex
+{
+	private static final int ABSENT = -1;
+	private long[] keys;
+	private int[] slots;
+	private int size;
+
+	ConnectionIndex(int expected)
+	{
+		var capacity = Integer.highestOneBit(Math.max(8, expected * 2 - 1)) << 1;
+		this.keys = new long[capacity];
+		this.slots = new int[capacity];
+		Arrays.fill(this.slots, ABSENT);
+	}
+
+	ConnectionIndex(ConnectionIndex other)
+	{
+		this.keys = other.keys.clone();
+		this.slots = other.slots.clone();
+		this.size = other.size;
+	}
+
+	static long key(int from, int to)
+	{
+		return (long) from << 32 | to & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * @return The slot of the key, or -1
+	 */
+	int get(long key)
+	{
+		var mask = this.keys.length - 1;
+		for(var bucket = hash(key) & mask;; bucket = bucket + 1 & mask)
+		{
+			if(this.slots[bucket] == ABSENT || this.keys[bucket] == key)
+			{
+				return this.slots[bucket];
+			}
+		}
+	}
+
+	void put(long key, int slot)
+	{
+		var mask = this.keys.length - 1;
+		var bucket = hash(key) & mask;
+		while(this.slots[bucket] != ABSENT && this.keys[bucket] != key)
+		{
+			bucket = bucket + 1 & mask;
+		}
+		var added = this.slots[bucket] == ABSENT;
+		this.keys[bucket] = key;
+		this.slots[bucket] = slot;
+		if(added && ++this.size * 2 > this.keys.length)
+		{
+			resize();
+		}
+	}
+
+	/**
+	 * Removes the key, if it still maps to the given slot
+	 */
+	void remove(long key, int slot)
+	{
+		var mask = this.keys.length - 1;
+		var bucket = hash(key) & mask;
+		while(this.slots[bucket] != ABSENT && this.keys[bucket] != key)
+		{
+			bucket = bucket + 1 & mask;
+		}
+		if(this.slots[bucket] != slot || slot == ABSENT)
+		{
+			return;
+		}
+		this.size--;
+		// shift back every entry that probed past the freed bucket
+		var free = bucket;
+		for(var next = free + 1 & mask; this.slots[next] != ABSENT; next = next + 1 & mask)
+		{
+			var home = hash(this.keys[next]) & mask;
+			if((next - home & mask) >= (next - free & mask))
+			{
+				this.keys[free] = this.keys[next];
+				this.slots[free] = this.slots[next];
+				free = next;
+			}
+		}
+		this.slots[free] = ABSENT;
+	}
+
+	void clear()
+	{
+		Arrays.fill(this.slots, ABSENT);
+		this.size = 0;
+	}
+
+	private void resize()
+	{
+		var keys = this.keys;
+		var slots = this.slots;
+		this.keys = new long[keys.length * 2];
+		this.slots = new int[slots.length * 2];
+		Arrays.fill(this.slots, ABSENT);
+		this.size = 0;
+		for(var bucket = 0; bucket < keys.length; bucket++)
+		{
+			if(slots[bucket] != ABSENT)
+			{
+				put(keys[bucket], slots[bucket]);
+			}
+		}
+	}
+
+	private static int hash(long key)
+	{
+		var mixed = key * 0x9E3779B97F4A7C15L;
+		return (int) (mixed ^ mixed >>> 32);
+	}
+}
@@ -0,0 +1,53 @@
+package neat;
+
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import genetic.evaluate.Evaluation;
+import network.FusedNetworks;
+
+/**
+ * Multi-evaluator that scores many individuals on the same input rows at once,
+ * by fusing their compiled networks into one {@link FusedNetworks}. Meant for
+ * {@link genetic.evaluate.Evaluator#ofMulti(Function) Evaluator.ofMulti}, for
+ * instance to score {@link SpeciatedPopulation#individuals()} as a batch.
+ *
+ * @param <T>
+ *            The type of individual
+ */
+public class FusedEvaluator<T extends NeuralIndividual>
+	implements Function<Stream<T>, Stream<Evaluation<T, Double>>>
+{
+	private final double[][] inputs;
+	private final ToDoubleFunction<double[][]> fitness;
+
+	/**
+	 * @param inputs
+	 *            The input rows every individual is evaluated on
+	 * @param fitness
+	 *            The fitness of an individual, given its outputs for each input
+	 *            row
+	 */
+	public FusedEvaluator(double[][] inputs, ToDoubleFunction<double[][]> fitness)
+	{
+		this.inputs = inputs;
+		this.fitness = fitness;
+	}
+
+	@Override
+	public Stream<Evaluation<T, Double>> apply(Stream<T> ts)
+	{
+		var individuals = ts.toList();
+		if(individuals.isEmpty())
+		{
+			return Stream.empty();
+		}
+		var networks = FusedNetworks
+			.of(individuals.stream().map(t -> t.genome().compile()).toList());
+		var outputs = networks.evaluateBatch(this.inputs);
+		return IntStream.range(0, individuals.size()).mapToObj(index -> new Evaluation<>(
+			individuals.get(index), this.fitness.applyAsDouble(outputs[index])));
+	}
+}
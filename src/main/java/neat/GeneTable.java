@@ -0,0 +1,646 @@
+package neat;
+
+import java.lang.reflect.Type;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+import java.util.function.Predicate;
+import java.util.random.RandomGenerator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+
+/**
+ * The genes of a {@link NeuralGenome}, stored as parallel primitive arrays with
+ * the enabled flags packed into a bitset. As a list, it reads genes out as
+ * {@link NeuralGene} records and writes them back into the arrays. Genes are
+ * always kept in order of their markers, which is where {@link #add(NeuralGene)}
+ * inserts them, so genomes can be compared by merging without sorting.
+ * Connections are indexed to the slot of their gene.
+ * <p>
+ * Copies share their arrays and index with the original until either one is
+ * first written to, which then copies them for itself. Until then, copying a
+ * genome that is never mutated, as with elitism, costs no more than the table
+ * itself.
+ */
+final class GeneTable extends AbstractList<NeuralGene> implements RandomAccess
+{
+	private int size;
+	private int[] from;
+	private int[] to;
+	private double[] weight;
+	private long[] marker;
+	private long[] enabled;
+	private ConnectionIndex index;
+	// whether the arrays and index may be shared with another table
+	private boolean shared;
+	// built on demand and kept up to date, but never shared
+	private TopologicalOrder order;
+	private SlotSet enabledSlots;
+	private SlotSet disabledSlots;
+	// read from several threads at once while speciating
+	private volatile MarkerSketch sketch;
+
+	GeneTable()
+	{
+		this(8);
+	}
+
+	private GeneTable(int capacity)
+	{
+		this.from = new int[capacity];
+		this.to = new int[capacity];
+		this.weight = new double[capacity];
+		this.marker = new long[capacity];
+		this.enabled = new long[words(capacity)];
+		this.index = new ConnectionIndex(capacity);
+	}
+
+	GeneTable(GeneTable other)
+	{
+		this.size = other.size;
+		this.from = other.from;
+		this.to = other.to;
+		this.weight = other.weight;
+		this.marker = other.marker;
+		this.enabled = other.enabled;
+		this.index = other.index;
+		this.shared = true;
+		other.shared = true;
+		var sketch = other.sketch;
+		this.sketch = sketch == null ? null : sketch.copy();
+	}
+
+	/**
+	 * Takes private copies of the arrays and index before a write, if they may
+	 * be shared
+	 */
+	private void own()
+	{
+		if(!this.shared)
+		{
+			return;
+		}
+		var capacity = Math.max(8, this.size + (this.size >>> 1));
+		this.from = Arrays.copyOf(this.from, capacity);
+		this.to = Arrays.copyOf(this.to, capacity);
+		this.weight = Arrays.copyOf(this.weight, capacity);
+		this.marker = Arrays.copyOf(this.marker, capacity);
+		this.enabled = Arrays.copyOf(this.enabled, words(capacity));
+		this.index = new ConnectionIndex(this.index);
+		this.shared = false;
+	}
+
+	private static int words(int bits)
+	{
+		return (bits + 63) >>> 6;
+	}
+
+	int from(int slot)
+	{
+		return this.from[slot];
+	}
+
+	int to(int slot)
+	{
+		return this.to[slot];
+	}
+
+	double weight(int slot)
+	{
+		return this.weight[slot];
+	}
+
+	long marker(int slot)
+	{
+		return this.marker[slot];
+	}
+
+	boolean enabled(int slot)
+	{
+		return (this.enabled[slot >>> 6] & 1L << slot) != 0;
+	}
+
+	void weight(int slot, double weight)
+	{
+		own();
+		this.weight[slot] = weight;
+	}
+
+	/**
+	 * Adds uniform noise from [-step, step) to weights in place, each with the
+	 * given probability. Rather than drawing a chance for every weight, the gaps
+	 * between perturbed weights are drawn from the geometric distribution, so
+	 * only the weights that change cost a random number.
+	 */
+	void perturbWeights(RandomGenerator random, double step, double probability)
+	{
+		if(this.size == 0 || probability <= 0)
+		{
+			return;
+		}
+		own();
+		var weight = this.weight;
+		if(probability >= 1)
+		{
+			for(var slot = 0; slot < this.size; slot++)
+			{
+				weight[slot] += random.nextDouble() * step * 2 - step;
+			}
+			return;
+		}
+		var logMiss = Math.log1p(-probability);
+		for(var slot = skip(random, logMiss, this.size); slot < this.size;
+			slot += 1 + skip(random, logMiss, this.size))
+		{
+			weight[slot] += random.nextDouble() * step * 2 - step;
+		}
+	}
+
+	/**
+	 * @return How many weights to leave alone before the next perturbed one, up
+	 *         to a limit
+	 */
+	private static int skip(RandomGenerator random, double logMiss, int limit)
+	{
+		return (int) Math.min(Math.floor(Math.log(1 - random.nextDouble()) / logMiss), limit);
+	}
+
+	void enabled(int slot, boolean enabled)
+	{
+		if(enabled(slot) == enabled)
+		{
+			return;
+		}
+		own();
+		flag(slot, enabled);
+		track(slot, enabled);
+		if(enabled)
+		{
+			link(this.from[slot], this.to[slot]);
+		}
+		else
+		{
+			unlink(this.from[slot], this.to[slot]);
+		}
+	}
+
+	private void flag(int slot, boolean enabled)
+	{
+		if(enabled)
+		{
+			this.enabled[slot >>> 6] |= 1L << slot;
+		}
+		else
+		{
+			this.enabled[slot >>> 6] &= ~(1L << slot);
+		}
+	}
+
+	int enabledCount()
+	{
+		return enabledSlots().size();
+	}
+
+	/**
+	 * @return The slot of the enabled gene at the given index, where enabled
+	 *         genes are indexed in no particular order
+	 */
+	int enabledSlot(int index)
+	{
+		return enabledSlots().get(index);
+	}
+
+	int disabledCount()
+	{
+		return disabledSlots().size();
+	}
+
+	/**
+	 * @return The slot of the disabled gene at the given index, where disabled
+	 *         genes are indexed in no particular order
+	 */
+	int disabledSlot(int index)
+	{
+		return disabledSlots().get(index);
+	}
+
+	/**
+	 * @return The number of enabled genes from the given neuron
+	 */
+	int enabledOutputs(int neuron)
+	{
+		return order().outputs(neuron);
+	}
+
+	/**
+	 * @return Whether the enabled genes lead from the source neuron to the
+	 *         target, or they are the same neuron
+	 */
+	boolean reaches(int source, int target)
+	{
+		return order().reaches(source, target);
+	}
+
+	/**
+	 * @return A sketch of the markers of this table with the given number of
+	 *         hash functions
+	 */
+	MarkerSketch sketch(int size)
+	{
+		var sketch = this.sketch;
+		if(sketch == null || sketch.size() != size)
+		{
+			sketch = MarkerSketch.of(this, size);
+			this.sketch = sketch;
+		}
+		return sketch;
+	}
+
+	private TopologicalOrder order()
+	{
+		if(this.order == null)
+		{
+			this.order = TopologicalOrder.of(this);
+		}
+		return this.order;
+	}
+
+	private SlotSet enabledSlots()
+	{
+		trackSlots();
+		return this.enabledSlots;
+	}
+
+	private SlotSet disabledSlots()
+	{
+		trackSlots();
+		return this.disabledSlots;
+	}
+
+	private void trackSlots()
+	{
+		if(this.enabledSlots != null)
+		{
+			return;
+		}
+		this.enabledSlots = new SlotSet();
+		this.disabledSlots = new SlotSet();
+		for(var slot = 0; slot < this.size; slot++)
+		{
+			(enabled(slot) ? this.enabledSlots : this.disabledSlots).add(slot);
+		}
+	}
+
+	/**
+	 * Renumbers the neurons of every gene through the given mapping, which must
+	 * cover them all. Markers, and so the order of genes, stay as they are.
+	 */
+	void remap(int[] mapping)
+	{
+		own();
+		for(var slot = 0; slot < this.size; slot++)
+		{
+			this.from[slot] = mapping[this.from[slot]];
+			this.to[slot] = mapping[this.to[slot]];
+		}
+		this.index.clear();
+		reindex(0);
+		this.order = null;
+	}
+
+	/**
+	 * @return The slot of the gene connecting the given neurons, or -1
+	 */
+	int slot(int from, int to)
+	{
+		return this.index.get(ConnectionIndex.key(from, to));
+	}
+
+	@Override
+	public int size()
+	{
+		return this.size;
+	}
+
+	@Override
+	public NeuralGene get(int slot)
+	{
+		checkSlot(slot, this.size);
+		return new NeuralGene(this.from[slot], this.to[slot], this.weight[slot], enabled(slot),
+			this.marker[slot]);
+	}
+
+	/**
+	 * @throws IllegalArgumentException
+	 *             If the gene has another marker, which could break the order
+	 */
+	@Override
+	public NeuralGene set(int slot, NeuralGene gene)
+	{
+		var old = get(slot);
+		if(old.marker() != gene.marker())
+		{
+			throw new IllegalArgumentException("Can't replace %s with %s!".formatted(old, gene));
+		}
+		own();
+		unindex(slot);
+		write(slot, gene);
+		if(old.enabled() != gene.enabled())
+		{
+			track(slot, gene.enabled());
+		}
+		if(old.enabled() != gene.enabled() || old.from() != gene.from() || old.to() != gene.to())
+		{
+			if(old.enabled())
+			{
+				unlink(old.from(), old.to());
+			}
+			if(gene.enabled())
+			{
+				link(gene.from(), gene.to());
+			}
+		}
+		return old;
+	}
+
+	/**
+	 * Inserts the gene after every gene with a marker up to its own
+	 */
+	@Override
+	public boolean add(NeuralGene gene)
+	{
+		var low = 0;
+		var high = this.size;
+		if(high > 0 && this.marker[high - 1] > gene.marker())
+		{
+			while(low < high)
+			{
+				var middle = low + high >>> 1;
+				if(this.marker[middle] <= gene.marker())
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+		}
+		insert(high, gene);
+		return true;
+	}
+
+	/**
+	 * @throws UnsupportedOperationException
+	 *             Always, genes go where their marker puts them
+	 */
+	@Override
+	public void add(int slot, NeuralGene gene)
+	{
+		throw new UnsupportedOperationException("Genes are kept in order of their markers!");
+	}
+
+	private void insert(int slot, NeuralGene gene)
+	{
+		own();
+		grow();
+		var moved = this.size - slot;
+		System.arraycopy(this.from, slot, this.from, slot + 1, moved);
+		System.arraycopy(this.to, slot, this.to, slot + 1, moved);
+		System.arraycopy(this.weight, slot, this.weight, slot + 1, moved);
+		System.arraycopy(this.marker, slot, this.marker, slot + 1, moved);
+		for(var shifted = this.size; shifted > slot; shifted--)
+		{
+			flag(shifted, enabled(shifted - 1));
+		}
+		this.size++;
+		this.modCount++;
+		reindex(slot + 1);
+		write(slot, gene);
+		if(this.sketch != null)
+		{
+			this.sketch.add(gene.marker());
+		}
+		if(slot == this.size - 1)
+		{
+			track(slot, gene.enabled());
+		}
+		else
+		{
+			forgetSlots();
+		}
+		if(gene.enabled())
+		{
+			link(gene.from(), gene.to());
+		}
+	}
+
+	@Override
+	public NeuralGene remove(int slot)
+	{
+		var old = get(slot);
+		own();
+		unindex(slot);
+		var moved = this.size - slot - 1;
+		System.arraycopy(this.from, slot + 1, this.from, slot, moved);
+		System.arraycopy(this.to, slot + 1, this.to, slot, moved);
+		System.arraycopy(this.weight, slot + 1, this.weight, slot, moved);
+		System.arraycopy(this.marker, slot + 1, this.marker, slot, moved);
+		for(var shifted = slot; shifted < this.size - 1; shifted++)
+		{
+			flag(shifted, enabled(shifted + 1));
+		}
+		this.size--;
+		flag(this.size, false);
+		this.modCount++;
+		reindex(slot);
+		this.sketch = null;
+		if(slot == this.size && this.enabledSlots != null)
+		{
+			this.enabledSlots.remove(slot);
+			this.disabledSlots.remove(slot);
+		}
+		else
+		{
+			forgetSlots();
+		}
+		if(old.enabled())
+		{
+			unlink(old.from(), old.to());
+		}
+		return old;
+	}
+
+	@Override
+	public boolean removeIf(Predicate<? super NeuralGene> filter)
+	{
+		own();
+		var kept = 0;
+		for(var slot = 0; slot < this.size; slot++)
+		{
+			if(!filter.test(get(slot)))
+			{
+				this.from[kept] = this.from[slot];
+				this.to[kept] = this.to[slot];
+				this.weight[kept] = this.weight[slot];
+				this.marker[kept] = this.marker[slot];
+				flag(kept++, enabled(slot));
+			}
+		}
+		if(kept == this.size)
+		{
+			return false;
+		}
+		for(var slot = kept; slot < this.size; slot++)
+		{
+			flag(slot, false);
+		}
+		this.size = kept;
+		this.modCount++;
+		this.index.clear();
+		reindex(0);
+		this.order = null;
+		this.sketch = null;
+		forgetSlots();
+		return true;
+	}
+
+	@Override
+	public void clear()
+	{
+		own();
+		Arrays.fill(this.enabled, 0);
+		this.size = 0;
+		this.modCount++;
+		this.index.clear();
+		this.order = null;
+		this.sketch = null;
+		forgetSlots();
+	}
+
+	private void write(int slot, NeuralGene gene)
+	{
+		this.from[slot] = gene.from();
+		this.to[slot] = gene.to();
+		this.weight[slot] = gene.weight();
+		this.marker[slot] = gene.marker();
+		flag(slot, gene.enabled());
+		this.index.put(ConnectionIndex.key(gene.from(), gene.to()), slot);
+	}
+
+	/**
+	 * Forgets the connection of a slot, unless another slot has taken it over
+	 */
+	private void unindex(int slot)
+	{
+		this.index.remove(ConnectionIndex.key(this.from[slot], this.to[slot]), slot);
+	}
+
+	private void track(int slot, boolean enabled)
+	{
+		if(this.enabledSlots != null)
+		{
+			(enabled ? this.enabledSlots : this.disabledSlots).add(slot);
+			(enabled ? this.disabledSlots : this.enabledSlots).remove(slot);
+		}
+	}
+
+	/**
+	 * Drops the slot sets after slots have moved, until they are next needed
+	 */
+	private void forgetSlots()
+	{
+		this.enabledSlots = null;
+		this.disabledSlots = null;
+	}
+
+	private void link(int from, int to)
+	{
+		if(this.order != null)
+		{
+			this.order.add(from, to);
+		}
+	}
+
+	private void unlink(int from, int to)
+	{
+		if(this.order != null)
+		{
+			this.order.remove(from, to);
+			// removing a connection may have broken the only cycle
+			if(!this.order.acyclic())
+			{
+				this.order = null;
+			}
+		}
+	}
+
+	private void reindex(int first)
+	{
+		for(var slot = first; slot < this.size; slot++)
+		{
+			this.index.put(ConnectionIndex.key(this.from[slot], this.to[slot]), slot);
+		}
+	}
+
+	private void grow()
+	{
+		if(this.size < this.from.length)
+		{
+			return;
+		}
+		var capacity = Math.max(8, this.from.length * 2);
+		this.from = Arrays.copyOf(this.from, capacity);
+		this.to = Arrays.copyOf(this.to, capacity);
+		this.weight = Arrays.copyOf(this.weight, capacity);
+		this.marker = Arrays.copyOf(this.marker, capacity);
+		this.enabled = Arrays.copyOf(this.enabled, words(capacity));
+	}
+
+	private static void checkSlot(int slot, int size)
+	{
+		if(slot < 0 || slot >= size)
+		{
+			throw new IndexOutOfBoundsException(
+				"Index %s out of bounds for length %s".formatted(slot, size));
+		}
+	}
+
+	/**
+	 * Reads and writes the genes as a JSON array of {@link NeuralGene
+	 * NeuralGenes}, as they were stored before this table existed
+	 */
+	static class Adapter implements JsonSerializer<GeneTable>, JsonDeserializer<GeneTable>
+	{
+		@Override
+		public JsonElement serialize(GeneTable src, Type typeOfSrc,
+			JsonSerializationContext context)
+		{
+			var array = new JsonArray(src.size);
+			for(var gene : src)
+			{
+				array.add(context.serialize(gene, NeuralGene.class));
+			}
+			return array;
+		}
+
+		@Override
+		public GeneTable deserialize(JsonElement json, Type typeOfT,
+			JsonDeserializationContext context) throws JsonParseException
+		{
+			var array = json.getAsJsonArray();
+			var table = new GeneTable(Math.max(8, array.size()));
+			for(var element : array)
+			{
+				table.add((NeuralGene) context.deserialize(element, NeuralGene.class));
+			}
+			return table;
+		}
+	}
+}
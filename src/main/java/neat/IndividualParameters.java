@@ -1,6 +1,6 @@
 package neat;
 
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public record IndividualParameters(boolean canMutate, double cloningMutationProbability,
 	double crossoverMutationProbability, double weightMutationProbability,
@@ -11,7 +11,7 @@ public record IndividualParameters(boolean canMutate, double cloningMutationProb
 	double destroyMutationProbability)
 {
 
-	public IndividualParameters mutateProbabilities(Random random)
+	public IndividualParameters mutateProbabilities(RandomGenerator random)
 	{
 		if(!canMutate())
 		{
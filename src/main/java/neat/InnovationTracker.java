@@ -1,15 +1,43 @@
 package neat;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.annotations.JsonAdapter;
 
 /**
- * Innovation tracker for historical markers
+ * Innovation tracker for historical markers. Safe to share between threads:
+ * however many threads invent the same connection at once, they all get the
+ * same marker, and markers stay consecutive.
+ * <p>
+ * Innovations are kept by their connection, packed into a long as
+ * {@code from << 32 | to}, in open-addressing tables split into stripes by
+ * hash, each with a lock of its own. Looking up a marker neither boxes nor
+ * allocates, and threads only contend when their connections share a stripe.
  */
+@JsonAdapter(InnovationTracker.Adapter.class)
 public class InnovationTracker
 {
-	private long marker = 0;
-	private Map<Integer, Map<Integer, Long>> genes = new HashMap<>();
+	private static final int STRIPES = 16;
+	private final AtomicLong marker = new AtomicLong();
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	public InnovationTracker()
+	{
+		for(var stripe = 0; stripe < STRIPES; stripe++)
+		{
+			this.stripes[stripe] = new Stripe();
+		}
+	}
 
 	/**
 	 * For each generation, the same connection must be a different innovation.
@@ -17,7 +45,18 @@ public class InnovationTracker
 	 */
 	public void reset()
 	{
-		this.genes.clear();
+		for(var stripe : this.stripes)
+		{
+			stripe.lock.lock();
+			try
+			{
+				stripe.clear();
+			}
+			finally
+			{
+				stripe.lock.unlock();
+			}
+		}
 	}
 
 	/**
@@ -25,23 +64,250 @@ public class InnovationTracker
 	 */
 	public long getMarker(int from, int to)
 	{
-		if(this.genes.containsKey(from))
+		var key = ConnectionIndex.key(from, to);
+		var hash = hash(key);
+		var stripe = this.stripes[hash >>> 28];
+		stripe.lock.lock();
+		try
 		{
-			var map = this.genes.get(from);
-			if(map.containsKey(to))
+			var marker = stripe.get(key, hash);
+			if(marker == Stripe.ABSENT)
 			{
-				return map.get(to);
+				marker = this.marker.getAndIncrement();
+				stripe.put(key, hash, marker);
 			}
-			else
+			return marker;
+		}
+		finally
+		{
+			stripe.lock.unlock();
+		}
+	}
+
+	/**
+	 * Renumbers the neurons of the innovations of this generation, forgetting
+	 * those with neurons the mapping leaves out. Other threads asking for
+	 * markers meanwhile wait for the whole renumbering.
+	 *
+	 * @param mapping
+	 *            The new number of each neuron, or -1 for none
+	 */
+	void remap(int[] mapping)
+	{
+		lockAll();
+		try
+		{
+			var entries = entries();
+			var keys = entries[0];
+			var markers = entries[1];
+			for(var stripe : this.stripes)
 			{
-				map.put(to, this.marker);
+				stripe.clear();
+			}
+			for(var entry = 0; entry < keys.length; entry++)
+			{
+				var from = (int) (keys[entry] >>> 32);
+				var to = (int) keys[entry];
+				if(from < mapping.length && to < mapping.length && mapping[from] >= 0
+					&& mapping[to] >= 0)
+				{
+					var key = ConnectionIndex.key(mapping[from], mapping[to]);
+					var hash = hash(key);
+					this.stripes[hash >>> 28].put(key, hash, markers[entry]);
+				}
 			}
 		}
-		else
+		finally
 		{
-			this.genes.put(from, new HashMap<>());
-			this.genes.get(from).put(to, this.marker);
+			unlockAll();
+		}
+	}
+
+	/**
+	 * @return The packed connections and the markers of every innovation, with
+	 *         every stripe locked
+	 */
+	private long[][] entries()
+	{
+		var size = 0;
+		for(var stripe : this.stripes)
+		{
+			size += stripe.size;
+		}
+		var keys = new long[size];
+		var markers = new long[size];
+		var entry = 0;
+		for(var stripe : this.stripes)
+		{
+			for(var bucket = 0; bucket < stripe.keys.length; bucket++)
+			{
+				if(stripe.markers[bucket] != Stripe.ABSENT)
+				{
+					keys[entry] = stripe.keys[bucket];
+					markers[entry++] = stripe.markers[bucket];
+				}
+			}
+		}
+		return new long[][] { keys, markers };
+	}
+
+	private void lockAll()
+	{
+		for(var stripe : this.stripes)
+		{
+			stripe.lock.lock();
+		}
+	}
+
+	private void unlockAll()
+	{
+		for(var stripe : this.stripes)
+		{
+			stripe.lock.unlock();
+		}
+	}
+
+	private static int hash(long key)
+	{
+		var mixed = key * 0x9E3779B97F4A7C15L;
+		return (int) (mixed ^ mixed >>> 32);
+	}
+
+	/**
+	 * Innovations whose hash falls in one stripe, with linear probing
+	 */
+	private static final class Stripe
+	{
+		private static final long ABSENT = -1;
+		private final ReentrantLock lock = new ReentrantLock();
+		private long[] keys = new long[16];
+		private long[] markers = newMarkers(16);
+		private int size;
+
+		long get(long key, int hash)
+		{
+			var mask = this.keys.length - 1;
+			for(var bucket = hash & mask;; bucket = bucket + 1 & mask)
+			{
+				if(this.markers[bucket] == ABSENT || this.keys[bucket] == key)
+				{
+					return this.markers[bucket];
+				}
+			}
+		}
+
+		/**
+		 * Adds an innovation, which must not be there yet
+		 */
+		void put(long key, int hash, long marker)
+		{
+			var mask = this.keys.length - 1;
+			var bucket = hash & mask;
+			while(this.markers[bucket] != ABSENT)
+			{
+				bucket = bucket + 1 & mask;
+			}
+			this.keys[bucket] = key;
+			this.markers[bucket] = marker;
+			if(++this.size * 2 > this.keys.length)
+			{
+				resize();
+			}
+		}
+
+		void clear()
+		{
+			Arrays.fill(this.markers, ABSENT);
+			this.size = 0;
+		}
+
+		private void resize()
+		{
+			var keys = this.keys;
+			var markers = this.markers;
+			this.keys = new long[keys.length * 2];
+			this.markers = newMarkers(markers.length * 2);
+			this.size = 0;
+			for(var bucket = 0; bucket < keys.length; bucket++)
+			{
+				if(markers[bucket] != ABSENT)
+				{
+					put(keys[bucket], hash(keys[bucket]), markers[bucket]);
+				}
+			}
+		}
+
+		private static long[] newMarkers(int capacity)
+		{
+			var markers = new long[capacity];
+			Arrays.fill(markers, ABSENT);
+			return markers;
+		}
+	}
+
+	/**
+	 * Reads and writes a tracker as the next marker and the markers of this
+	 * generation by input and output neuron, as in
+	 * {@code {"marker": 5, "genes": {"1": {"3": 4}}}}, the form it was stored in
+	 * before it had stripes
+	 */
+	static class Adapter implements JsonSerializer<InnovationTracker>,
+		JsonDeserializer<InnovationTracker>
+	{
+		@Override
+		public JsonElement serialize(InnovationTracker src, Type typeOfSrc,
+			JsonSerializationContext context)
+		{
+			var genes = new JsonObject();
+			src.lockAll();
+			try
+			{
+				var entries = src.entries();
+				for(var entry = 0; entry < entries[0].length; entry++)
+				{
+					var from = Integer.toString((int) (entries[0][entry] >>> 32));
+					if(!genes.has(from))
+					{
+						genes.add(from, new JsonObject());
+					}
+					genes.getAsJsonObject(from).addProperty(
+						Integer.toString((int) entries[0][entry]), entries[1][entry]);
+				}
+			}
+			finally
+			{
+				src.unlockAll();
+			}
+			var json = new JsonObject();
+			json.addProperty("marker", src.marker.get());
+			json.add("genes", genes);
+			return json;
+		}
+
+		@Override
+		public InnovationTracker deserialize(JsonElement json, Type typeOfT,
+			JsonDeserializationContext context) throws JsonParseException
+		{
+			var object = json.getAsJsonObject();
+			var tracker = new InnovationTracker();
+			if(object.has("marker"))
+			{
+				tracker.marker.set(object.get("marker").getAsLong());
+			}
+			if(object.has("genes"))
+			{
+				for(var from : object.getAsJsonObject("genes").entrySet())
+				{
+					for(var to : from.getValue().getAsJsonObject().entrySet())
+					{
+						var key = ConnectionIndex.key(Integer.parseInt(from.getKey()),
+							Integer.parseInt(to.getKey()));
+						var hash = hash(key);
+						tracker.stripes[hash >>> 28].put(key, hash, to.getValue().getAsLong());
+					}
+				}
+			}
+			return tracker;
 		}
-		return this.marker++;
 	}
 }
@@ -0,0 +1,91 @@
+package neat;
+
+import java.util.Arrays;
+
+/**
+ * A MinHash sketch of the markers of a genome: the least hash of its markers
+ * under each of a fixed number of hash functions. The share of hash functions
+ * two sketches agree on estimates the Jaccard similarity of the two sets of
+ * markers, and by Hoeffding's inequality falls short of it by more than
+ * {@code e} with probability at most {@code exp(-2 size e^2)}.
+ * <p>
+ * Adding markers keeps a sketch up to date, but removing them can't, so
+ * tables drop their sketch on removals and rebuild it when next needed.
+ */
+final class MarkerSketch
+{
+	private final long[] minima;
+
+	private MarkerSketch(long[] minima)
+	{
+		this.minima = minima;
+	}
+
+	MarkerSketch(int size)
+	{
+		this(new long[size]);
+		Arrays.fill(this.minima, Long.MAX_VALUE);
+	}
+
+	static MarkerSketch of(GeneTable genes, int size)
+	{
+		var sketch = new MarkerSketch(size);
+		for(var slot = 0; slot < genes.size(); slot++)
+		{
+			sketch.add(genes.marker(slot));
+		}
+		return sketch;
+	}
+
+	MarkerSketch copy()
+	{
+		return new MarkerSketch(this.minima.clone());
+	}
+
+	int size()
+	{
+		return this.minima.length;
+	}
+
+	void add(long marker)
+	{
+		for(var function = 0; function < this.minima.length; function++)
+		{
+			this.minima[function] = Math.min(this.minima[function], hash(marker, function));
+		}
+	}
+
+	/**
+	 * @return The share of hash functions both sketches have the same least
+	 *         hash under, estimating the Jaccard similarity of their markers
+	 */
+	double similarity(MarkerSketch other)
+	{
+		if(other.minima.length != this.minima.length)
+		{
+			throw new IllegalArgumentException("Can't compare sketches of sizes %s and %s!"
+				.formatted(this.minima.length, other.minima.length));
+		}
+		var agreeing = 0;
+		for(var function = 0; function < this.minima.length; function++)
+		{
+			if(this.minima[function] == other.minima[function]
+				&& this.minima[function] != Long.MAX_VALUE)
+			{
+				agreeing++;
+			}
+		}
+		return agreeing / (double) Math.max(1, this.minima.length);
+	}
+
+	/**
+	 * The function-th hash of a marker, mixed as by {@link java.util.SplittableRandom}
+	 */
+	private static long hash(long marker, int function)
+	{
+		var mixed = marker + (function + 1) * 0x9E3779B97F4A7C15L;
+		mixed = (mixed ^ mixed >>> 30) * 0xBF58476D1CE4E5B9L;
+		mixed = (mixed ^ mixed >>> 27) * 0x94D049BB133111EBL;
+		return mixed ^ mixed >>> 31;
+	}
+}
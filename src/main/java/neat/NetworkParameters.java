@@ -3,9 +3,12 @@ package neat;
 /**
  * @param fullyConnected
  *            Whether the network starts fully connected or not
+ * @param perturbationProbability
+ *            The chance of each weight being perturbed by a weight mutation
  */
 public record NetworkParameters(int inputs, int outputs, int biases, boolean recurrent,
-	double range, double step, boolean fullyConnected, boolean arbitrarilyConnected)
+	double range, double step, boolean fullyConnected, boolean arbitrarilyConnected,
+	double perturbationProbability)
 {
 
 	public static Builder builder()
@@ -22,6 +25,7 @@ public record NetworkParameters(int inputs, int outputs, int biases, boolean rec
 		private double step = 0.01;
 		private boolean fullyConnected = false;
 		private boolean arbitrarilyConnected = false;
+		private double perturbationProbability = 1;
 
 		private Builder()
 		{
@@ -75,10 +79,17 @@ public record NetworkParameters(int inputs, int outputs, int biases, boolean rec
 			return this;
 		}
 
+		public Builder withPerturbationProbability(double perturbationProbability)
+		{
+			this.perturbationProbability = perturbationProbability;
+			return this;
+		}
+
 		public NetworkParameters build()
 		{
 			return new NetworkParameters(this.inputs, this.outputs, this.biases, this.recurrent,
-				this.range, this.step, this.fullyConnected, this.arbitrarilyConnected);
+				this.range, this.step, this.fullyConnected, this.arbitrarilyConnected,
+				this.perturbationProbability);
 		}
 	}
 }
@@ -1,61 +1,144 @@
 package neat;
 
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Random;
+import java.util.Set;
 import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 import java.util.stream.IntStream;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import genetic.genome.Genome;
+import network.CompiledNetwork;
 import network.Network;
+import network.activation.ActivationFunction;
+import network.activation.Activations;
 import network.neuron.Neuron;
+import utils.RandomSource;
 
 public class NeuralGenome implements Genome
 {
-	private static final Random random = new Random();
-	private ArrayList<NeuralGene> genes;
-	private HashMap<NeuralConnection, NeuralGene> connectionGenes;
+	private static final RandomGenerator random = RandomSource.shared();
+	@JsonAdapter(GeneTable.Adapter.class)
+	private GeneTable genes;
 	private NetworkParameters networkParameters;
 	private int neurons;
 
+	/**
+	 * Copies the genome, sharing its genes until either one changes them
+	 */
 	public NeuralGenome(NeuralGenome other)
 	{
-		this.genes = new ArrayList<>(other.genes);
-		this.connectionGenes = new HashMap<>(other.connectionGenes);
+		this.genes = new GeneTable(other.genes);
 		this.networkParameters = other.networkParameters;
 		this.neurons = other.neurons;
 	}
 
 	public NeuralGenome(NetworkParameters networkParameters)
 	{
-		this.genes = new ArrayList<>();
-		this.connectionGenes = new HashMap<>();
+		this.genes = new GeneTable();
 		this.networkParameters = networkParameters;
 		this.neurons = inputs() + outputs() + biases();
 	}
 
 	public Optional<NeuralGene> getConnection(int from, int to)
 	{
-		return Optional.ofNullable(this.connectionGenes.get(new NeuralConnection(from, to)));
+		var slot = this.genes.slot(from, to);
+		return slot < 0 ? Optional.empty() : Optional.of(this.genes.get(slot));
 	}
 
 	public boolean hasConnection(int from, int to)
 	{
-		return this.connectionGenes.containsKey(new NeuralConnection(from, to));
+		return this.genes.slot(from, to) >= 0;
+	}
+
+	/**
+	 * Answered from a topological order of the enabled connections, kept up to
+	 * date as they change, so that only the neurons between the two in that
+	 * order are ever searched
+	 *
+	 * @return Whether connecting the given neurons would close a cycle of
+	 *         enabled connections
+	 */
+	public boolean createsCycle(int from, int to)
+	{
+		return this.genes.reaches(to, from);
 	}
 
+	/**
+	 * @return The genes in order of their markers, backed by this genome's
+	 *         primitive storage, so that writes to the list are writes to the
+	 *         genome
+	 */
 	public List<NeuralGene> genes()
 	{
 		return this.genes;
 	}
 
+	GeneTable geneTable()
+	{
+		return this.genes;
+	}
+
+	/**
+	 * @return An unmodifiable view of the genes by their connection, which
+	 *         follows changes to the genome. Genes are changed through the
+	 *         genome or {@link #genes()} instead.
+	 */
 	public Map<NeuralConnection, NeuralGene> connectionGenes()
 	{
-		return this.connectionGenes;
+		var genes = this.genes;
+		return new AbstractMap<>()
+		{
+			@Override
+			public NeuralGene get(Object key)
+			{
+				var slot = key instanceof NeuralConnection connection
+					? genes.slot(connection.from(), connection.to())
+					: -1;
+				return slot < 0 ? null : genes.get(slot);
+			}
+
+			@Override
+			public boolean containsKey(Object key)
+			{
+				return key instanceof NeuralConnection connection
+					&& genes.slot(connection.from(), connection.to()) >= 0;
+			}
+
+			@Override
+			public int size()
+			{
+				return genes.size();
+			}
+
+			@Override
+			public Set<Entry<NeuralConnection, NeuralGene>> entrySet()
+			{
+				return new AbstractSet<>()
+				{
+					@Override
+					public Iterator<Entry<NeuralConnection, NeuralGene>> iterator()
+					{
+						return genes.stream()
+							.map(gene -> Map.entry(new NeuralConnection(gene.from(), gene.to()), gene))
+							.iterator();
+					}
+
+					@Override
+					public int size()
+					{
+						return genes.size();
+					}
+				};
+			}
+		};
 	}
 
 	public int inputs()
@@ -88,6 +171,21 @@ public class NeuralGenome implements Genome
 		this.neurons = neurons;
 	}
 
+	/**
+	 * Renumbers the neurons of this genome through the given mapping, which must
+	 * cover them all, and shrinks the neuron count to the highest one left
+	 */
+	void remap(int[] mapping)
+	{
+		this.genes.remap(mapping);
+		var neurons = inputs() + outputs() + biases();
+		for(var slot = 0; slot < this.genes.size(); slot++)
+		{
+			neurons = Math.max(neurons, Math.max(this.genes.from(slot), this.genes.to(slot)) + 1);
+		}
+		this.neurons = neurons;
+	}
+
 	public NetworkParameters networkParameters()
 	{
 		return this.networkParameters;
@@ -104,8 +202,7 @@ public class NeuralGenome implements Genome
 		var network = new Network(inputs(), outputs(), biases(), recurrent());
 		var map = new HashMap<Integer, Integer>();
 		IntStream.range(0, inputs() + outputs() + biases()).forEach(x -> map.put(x, x));
-		this.genes.stream().filter(NeuralGene::enabled)
-			.sorted(Comparator.comparing(NeuralGene::marker)).forEach(gene ->
+		this.genes.stream().filter(NeuralGene::enabled).forEach(gene ->
 		{
 			if(!map.containsKey(gene.from()))
 			{
@@ -120,6 +217,43 @@ public class NeuralGenome implements Genome
 		return network;
 	}
 
+	/**
+	 * @return A network that computes the same outputs as
+	 *         {@link NeuralGenome#toNetwork(Supplier) toNetwork}, with its
+	 *         evaluation order fixed ahead of time, and the neurons and
+	 *         connections that cannot affect its outputs left out
+	 */
+	public CompiledNetwork compile()
+	{
+		return compile(Activations.SIGMOID);
+	}
+
+	/**
+	 * See {@link NeuralGenome#compile()}
+	 *
+	 * @param activation
+	 *            The function applied to every output and hidden neuron
+	 */
+	public CompiledNetwork compile(ActivationFunction activation)
+	{
+		return compiler().withActivation(activation).build();
+	}
+
+	/**
+	 * @return A builder holding the enabled connections of this genome, for
+	 *         compiling with other options, such as
+	 *         {@link CompiledNetwork.Builder#withMinimumWeight(double) dropping
+	 *         small weights}
+	 */
+	public CompiledNetwork.Builder compiler()
+	{
+		var builder = CompiledNetwork.builder().withInputs(inputs()).withOutputs(outputs())
+			.withBiases(biases()).withRecurrency(recurrent());
+		this.genes.stream().filter(NeuralGene::enabled)
+			.forEach(gene -> builder.withConnection(gene.from(), gene.to(), gene.weight()));
+		return builder;
+	}
+
 	public void becomeFullyConnected(InnovationTracker tracker)
 	{
 		var inputs = this.networkParameters.inputs();
@@ -150,7 +284,6 @@ public class NeuralGenome implements Genome
 				"Can't replace %s with %s!".formatted(oldGene, newGene));
 		}
 		this.genes.set(geneIndex, newGene);
-		this.connectionGenes.put(new NeuralConnection(newGene.from(), newGene.to()), newGene);
 	}
 
 	public void addConnection(int from, int to, InnovationTracker tracker)
@@ -168,15 +301,16 @@ public class NeuralGenome implements Genome
 		InnovationTracker tracker)
 	{
 		var updated = new NeuralGene(from, to, weight, enabled, tracker.getMarker(from, to));
-		this.connectionGenes.put(new NeuralConnection(from, to), updated);
-		for(var iter = genes.listIterator(); iter.hasNext();)
+		var slot = this.genes.slot(from, to);
+		if(slot >= 0 && this.genes.marker(slot) == updated.marker())
 		{
-			var gene = iter.next();
-			if(gene.from() == from && gene.to() == to)
-			{
-				iter.set(updated);
-				return;
-			}
+			this.genes.set(slot, updated);
+			return;
+		}
+		// a connection invented again in a later generation moves to its new marker
+		if(slot >= 0)
+		{
+			this.genes.remove(slot);
 		}
 		this.genes.add(updated);
 	}
@@ -1,19 +1,45 @@
 package neat;
 
-import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
-import java.util.Random;
-import java.util.function.Consumer;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.function.Predicate;
-import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.UnaryOperator;
+import java.util.random.RandomGenerator;
 
 import utils.Exclude;
+import utils.RandomSource;
 
 public class NeuralIndividual extends SpeciesIndividual<Double>
 {
-	private static final Random random = new Random();
+	private static final RandomGenerator random = RandomSource.shared();
+	// the operators of a comprehensive mutation, in the order they apply
+	private static final List<Operator> OPERATORS = List.of(
+		new Operator(IndividualParameters::weightMutationProbability,
+			NeuralIndividual::mutateWeight),
+		new Operator(IndividualParameters::randomWeightMutationProbability,
+			NeuralIndividual::mutateRandomWeight),
+		new Operator(IndividualParameters::linkMutationProbability,
+			NeuralIndividual::mutateLink),
+		new Operator(IndividualParameters::biasLinkMutationProbability,
+			NeuralIndividual::mutateBiasLink),
+		new Operator(IndividualParameters::outputLinkMutationProbability,
+			NeuralIndividual::mutateOutputLink),
+		new Operator(IndividualParameters::sensorMutationProbability,
+			NeuralIndividual::mutateSensor),
+		new Operator(IndividualParameters::neuronMutationProbability,
+			NeuralIndividual::mutateNeuron),
+		new Operator(IndividualParameters::enableMutationProbability,
+			NeuralIndividual::mutateEnable),
+		new Operator(IndividualParameters::disableMutationProbability,
+			NeuralIndividual::mutateDisable),
+		new Operator(IndividualParameters::destroyMutationProbability,
+			NeuralIndividual::mutateDestroy));
 	private NeuralGenome genome;
 	@Exclude
 	private InnovationTracker tracker;
@@ -37,7 +63,7 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 
 	private NeuralIndividual(NeuralIndividual other)
 	{
-		this.genome = new NeuralGenome(other.genome().copy());
+		this.genome = other.genome.copy();
 		this.tracker = other.tracker;
 		this.individualParameters = other.individualParameters.copy();
 		this.fitness = other.fitness;
@@ -93,57 +119,65 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 	 */
 	@Override
 	public Double difference(SpeciesIndividual<Double> di, SpeciationParameters parameters)
+	{
+		return difference(di, parameters, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Computes genomic distance between two NeuralIndividuals, giving up once
+	 * the genes merged so far put it at or above the bound
+	 */
+	@Override
+	public Double difference(SpeciesIndividual<Double> di, SpeciationParameters parameters,
+		double bound)
 	{
 		if(di instanceof NeuralIndividual other)
 		{
-			var genome1 = this.genome;
-			var genome2 = other.genome;
-			Collections.sort(genome1.genes(), Comparator.comparingLong(NeuralGene::marker));
-			Collections.sort(genome2.genes(), Comparator.comparingLong(NeuralGene::marker));
-			var iter1 = genome1.genes().iterator();
-			var iter2 = genome2.genes().iterator();
-			var gene1 = iter1.hasNext() ? iter1.next() : null;
-			var gene2 = iter2.hasNext() ? iter2.next() : null;
+			// both gene tables are sorted by marker, so they can be merged in place
+			var genes1 = this.genome.geneTable();
+			var genes2 = other.genome.geneTable();
+			var size1 = genes1.size();
+			var size2 = genes2.size();
+			var index1 = 0;
+			var index2 = 0;
 			var disjoint = 0d;
-			var excess = 0d;
 			var weightDiffs = 0d;
 			var joint = 0d;
-			while(gene1 != null && gene2 != null)
+			double largerGenomeSize = Math.max(1, Math.max(size1, size2));
+			// negative coefficients would make the partial distance meaningless
+			var bounded = bound < Double.POSITIVE_INFINITY && parameters.excessCoefficient() >= 0
+				&& parameters.disjointCoefficient() >= 0
+				&& parameters.weightDifferenceCoefficient() >= 0;
+			for(var step = 1; index1 < size1 && index2 < size2; step++)
 			{
-				if(gene1.marker() < gene2.marker())
+				var marker1 = genes1.marker(index1);
+				var marker2 = genes2.marker(index2);
+				if(marker1 < marker2)
 				{
 					disjoint++;
-					gene1 = iter1.hasNext() ? iter1.next() : null;
+					index1++;
 				}
-				else if(gene1.marker() > gene2.marker())
+				else if(marker1 > marker2)
 				{
 					disjoint++;
-					gene2 = iter2.hasNext() ? iter2.next() : null;
+					index2++;
 				}
-				else if(gene1.marker() == gene2.marker())
+				else
 				{
-					weightDiffs += Math.abs(gene1.weight() - gene2.weight());
+					weightDiffs += Math.abs(genes1.weight(index1++) - genes2.weight(index2++));
 					joint++;
-					gene1 = iter1.hasNext() ? iter1.next() : null;
-					gene2 = iter2.hasNext() ? iter2.next() : null;
+				}
+				if(bounded && (step & 15) == 0)
+				{
+					var partial = partialDifference(parameters, size1, size2, index1, index2,
+						disjoint, weightDiffs, joint, largerGenomeSize);
+					if(partial >= bound)
+					{
+						return partial;
+					}
 				}
 			}
-			if(gene1 != null || gene2 != null)
-			{
-				excess++;
-			}
-			while(iter1.hasNext())
-			{
-				excess++;
-				iter1.next();
-			}
-			while(iter2.hasNext())
-			{
-				excess++;
-				iter2.next();
-			}
-			double largerGenomeSize = Math.max(1,
-				Math.max(genome1.genes().size(), genome2.genes().size()));
+			double excess = size1 - index1 + size2 - index2;
 			return parameters.excessCoefficient() * excess / largerGenomeSize
 				+ parameters.disjointCoefficient() * disjoint / largerGenomeSize
 				+ parameters.weightDifferenceCoefficient()
@@ -157,8 +191,66 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 		}
 	}
 
+	/**
+	 * Compares MinHash sketches of the markers of both genomes, which estimate
+	 * how many genes are disjoint or excess. Each individual close enough to
+	 * this one is still ruled out with a chance of at most the false rejection
+	 * rate, since the similarity the sketches estimate is taken to be higher by
+	 * the margin Hoeffding's inequality allows at that rate.
+	 */
+	@Override
+	public boolean mayDifferBelow(SpeciesIndividual<Double> di, SpeciationParameters parameters,
+		double bound)
+	{
+		var size = parameters.sketchSize();
+		var rate = parameters.falseRejectionRate();
+		// parameters read from files skip the builder, so a rate outside (0, 1] sketches nothing
+		if(size <= 0 || !(rate > 0 && rate <= 1) || !(di instanceof NeuralIndividual other)
+			|| parameters.excessCoefficient() < 0 || parameters.disjointCoefficient() < 0
+			|| parameters.weightDifferenceCoefficient() < 0)
+		{
+			return true;
+		}
+		var genes1 = this.genome.geneTable();
+		var genes2 = other.genome.geneTable();
+		double size1 = genes1.size();
+		double size2 = genes2.size();
+		var margin = Math.sqrt(Math.log(1 / rate) / (2 * size));
+		var similarity = Math.min(1, genes1.sketch(size).similarity(genes2.sketch(size)) + margin);
+		// genes in only one genome, from the sizes alone and from the similarity
+		var unmatched = Math.max(Math.abs(size1 - size2),
+			(size1 + size2) * (1 - similarity) / (1 + similarity));
+		return Math.min(parameters.excessCoefficient(), parameters.disjointCoefficient())
+			* unmatched / Math.max(1, Math.max(size1, size2)) < bound;
+	}
+
+	/**
+	 * @return A lower bound on the distance of a merge stopped at the given
+	 *         indices: at most the shorter remainder can still be joint, every
+	 *         other gene is disjoint or excess, and disjoint genes are never
+	 *         uncounted
+	 */
+	private static double partialDifference(SpeciationParameters parameters, int size1,
+		int size2, int index1, int index2, double disjoint, double weightDiffs, double joint,
+		double largerGenomeSize)
+	{
+		var maxJoint = joint + Math.min(size1 - index1, size2 - index2);
+		var unmatched = size1 + size2 - 2 * maxJoint;
+		var excessCoefficient = parameters.excessCoefficient();
+		var disjointCoefficient = parameters.disjointCoefficient();
+		var genes = excessCoefficient < disjointCoefficient
+			? disjointCoefficient * disjoint + excessCoefficient * Math.max(0, unmatched - disjoint)
+			: disjointCoefficient * Math.max(disjoint, unmatched);
+		var weights = parameters.weightDifferencePower() < 0 ? 0
+			: parameters.weightDifferenceCoefficient()
+				* Math.pow(weightDiffs, parameters.weightDifferencePower()) / Math.max(1, maxJoint);
+		return genes / largerGenomeSize + weights;
+	}
+
 	public NeuralIndividual crossover(NeuralIndividual other)
 	{
+		// draws once or twice per gene, so the thread's generator is looked up once
+		var random = RandomSource.current();
 		var genome1 = this.genome;
 		var genome2 = other.genome;
 		var evaluation1 = this.fitness;
@@ -168,85 +260,51 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 				: random.nextBoolean() ? this.individualParameters : other.individualParameters;
 		var child = new NeuralIndividual(this.tracker, this.genome.networkParameters(),
 			individualParameters.copy());
-		Collections.sort(genome1.genes(), Comparator.comparingLong(NeuralGene::marker));
-		Collections.sort(genome2.genes(), Comparator.comparingLong(NeuralGene::marker));
-		var iter1 = genome1.genes().iterator();
-		var iter2 = genome2.genes().iterator();
-		var gene1 = iter1.hasNext() ? iter1.next() : null;
-		var gene2 = iter2.hasNext() ? iter2.next() : null;
-		var exclusive1 = new ArrayList<NeuralGene>();
-		var exclusive2 = new ArrayList<NeuralGene>();
+		// genes exclusive to one parent come from the fitter one, or from either
+		// one when tied, picking a whole parent unless the genome is recurrent
+		var inherit1 = evaluation1 > evaluation2;
+		var inherit2 = evaluation2 > evaluation1;
+		var mixed = !inherit1 && !inherit2 && this.genome.recurrent();
+		if(!inherit1 && !inherit2 && !mixed)
+		{
+			inherit1 = random.nextBoolean();
+			inherit2 = !inherit1;
+		}
+		// both parents are sorted by marker, so the child is built in order
+		var genes1 = genome1.geneTable();
+		var genes2 = genome2.geneTable();
+		var index1 = 0;
+		var index2 = 0;
 		var joint = child.genome.genes();
-		while(gene1 != null && gene2 != null)
+		while(index1 < genes1.size() || index2 < genes2.size())
 		{
-			if(gene1.marker() < gene2.marker())
+			var marker1 = index1 < genes1.size() ? genes1.marker(index1) : Long.MAX_VALUE;
+			var marker2 = index2 < genes2.size() ? genes2.marker(index2) : Long.MAX_VALUE;
+			if(index2 == genes2.size() || index1 < genes1.size() && marker1 < marker2)
 			{
-				exclusive1.add(gene1);
-				gene1 = iter1.hasNext() ? iter1.next() : null;
+				if(inherit1 || mixed && random.nextBoolean())
+				{
+					joint.add(genes1.get(index1));
+				}
+				index1++;
 			}
-			else if(gene1.marker() > gene2.marker())
+			else if(index1 == genes1.size() || marker1 > marker2)
 			{
-				exclusive2.add(gene2);
-				gene2 = iter2.hasNext() ? iter2.next() : null;
+				if(inherit2 || mixed && random.nextBoolean())
+				{
+					joint.add(genes2.get(index2));
+				}
+				index2++;
 			}
-			else if(gene1.marker() == gene2.marker())
+			else
 			{
+				var gene1 = genes1.get(index1++);
+				var gene2 = genes2.get(index2++);
 				var next = random.nextBoolean() ? gene1 : gene2;
 				var enabled = random.nextBoolean() ? gene1.enabled() : gene2.enabled();
 				joint.add(next.withEnabled(enabled));
-				gene1 = iter1.hasNext() ? iter1.next() : null;
-				gene2 = iter2.hasNext() ? iter2.next() : null;
 			}
 		}
-		if(gene1 != null)
-		{
-			exclusive1.add(gene1);
-		}
-		while(iter1.hasNext())
-		{
-			exclusive1.add(iter1.next());
-		}
-		if(gene2 != null)
-		{
-			exclusive2.add(gene2);
-		}
-		while(iter2.hasNext())
-		{
-			exclusive2.add(iter2.next());
-		}
-		if(evaluation1 > evaluation2)
-		{
-			joint.addAll(exclusive1);
-		}
-		else if(evaluation2 > evaluation1)
-		{
-			joint.addAll(exclusive2);
-		}
-		else if(this.genome.recurrent())
-		{
-			for(var gene : exclusive1)
-			{
-				if(random.nextBoolean())
-				{
-					joint.add(gene);
-				}
-			}
-			for(var gene : exclusive2)
-			{
-				if(random.nextBoolean())
-				{
-					joint.add(gene);
-				}
-			}
-		}
-		else if(random.nextBoolean())
-		{
-			joint.addAll(exclusive1);
-		}
-		else
-		{
-			joint.addAll(exclusive2);
-		}
 		// max known input/output/bias node
 		var maxIOB = this.genome.inputs() + this.genome.outputs() + this.genome.biases() - 1;
 		// scan all nodes, finding useless ones, and throw them away
@@ -278,56 +336,72 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 
 	public NeuralIndividual mutateCrossover()
 	{
-		this.applyMutation(this.individualParameters::crossoverMutationProbability,
-			NeuralIndividual::mutateComprehensively);
+		for(var count = occurrences(this.individualParameters.crossoverMutationProbability());
+			count > 0; count--)
+		{
+			mutateComprehensively();
+		}
 		return this;
 	}
 
 	public NeuralIndividual mutateCloning()
 	{
-		this.applyMutation(this.individualParameters::cloningMutationProbability,
-			NeuralIndividual::mutateComprehensively);
+		for(var count = occurrences(this.individualParameters.cloningMutationProbability());
+			count > 0; count--)
+		{
+			mutateComprehensively();
+		}
 		return this;
 	}
 
+	/**
+	 * Draws how many times each operator applies before applying any, then
+	 * applies them in order. Only weight perturbation passes over the genes;
+	 * the other operators pick their genes from the live sets of enabled and
+	 * disabled genes.
+	 * <p>
+	 * The operators still run one after another rather than fused into a single
+	 * pass: links and neurons added by one operator are genes the next ones may
+	 * pick, so a fused pass would have to plan against genes that don't exist
+	 * yet.
+	 */
 	public NeuralIndividual mutateComprehensively()
 	{
 		if(this.individualParameters.canMutate())
 		{
 			this.individualParameters = this.individualParameters.mutateProbabilities(random);
 		}
-		this.applyMutation(this.individualParameters::weightMutationProbability,
-			NeuralIndividual::mutateWeight);
-		this.applyMutation(this.individualParameters::randomWeightMutationProbability,
-			NeuralIndividual::mutateRandomWeight);
-		this.applyMutation(this.individualParameters::linkMutationProbability,
-			NeuralIndividual::mutateLink);
-		this.applyMutation(this.individualParameters::biasLinkMutationProbability,
-			NeuralIndividual::mutateBiasLink);
-		this.applyMutation(this.individualParameters::outputLinkMutationProbability,
-			NeuralIndividual::mutateOutputLink);
-		this.applyMutation(this.individualParameters::sensorMutationProbability,
-			NeuralIndividual::mutateSensor);
-		this.applyMutation(this.individualParameters::neuronMutationProbability,
-			NeuralIndividual::mutateNeuron);
-		this.applyMutation(this.individualParameters::enableMutationProbability,
-			NeuralIndividual::mutateEnable);
-		this.applyMutation(this.individualParameters::disableMutationProbability,
-			NeuralIndividual::mutateDisable);
-		this.applyMutation(this.individualParameters::destroyMutationProbability,
-			NeuralIndividual::mutateDestroy);
+		var plan = new int[OPERATORS.size()];
+		for(var operator = 0; operator < plan.length; operator++)
+		{
+			plan[operator] = occurrences(
+				OPERATORS.get(operator).probability().applyAsDouble(this.individualParameters));
+		}
+		for(var operator = 0; operator < plan.length; operator++)
+		{
+			for(var count = plan[operator]; count > 0; count--)
+			{
+				OPERATORS.get(operator).mutation().apply(this);
+			}
+		}
 		return this;
 	}
 
-	private void applyMutation(Supplier<Double> probability, Consumer<NeuralIndividual> mutation)
+	/**
+	 * @return How many times to apply an operator, once for every whole unit of
+	 *         its probability, and once more with the chance of the remainder
+	 */
+	private static int occurrences(double probability)
 	{
-		for(var chance = probability.get(); chance > 0; chance--)
+		var count = 0;
+		for(var chance = probability; chance > 0; chance--)
 		{
 			if(chance >= 1 || random.nextDouble() < chance)
 			{
-				mutation.accept(this);
+				count++;
 			}
 		}
+		return count;
 	}
 
 	/**
@@ -413,7 +487,8 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 		if(!this.genome.recurrent() && !isInput.test(first) && !isBias.test(first)
 			&& !isOutput.test(second))
 		{
-			// need to preserve DAG-ness of the neural network
+			// need to preserve DAG-ness of the neural network, and the flipped
+			// link is safe, as the second neuron already reaches the first
 			if(this.isRecurrent(first, second))
 			{
 				var temp = first;
@@ -425,52 +500,13 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 		return this;// .9, try twice
 	}
 
-	// help, this function is extremely expensive!!!
+	/**
+	 * @return Whether linking the given neurons would close a cycle of enabled
+	 *         links
+	 */
 	public boolean isRecurrent(int from, int to)
 	{
-		var earliestFrom = Long.MAX_VALUE;
-		var earliestTo = Long.MAX_VALUE;
-		for(var gene : this.genome().genes())
-		{
-			if(gene.from() == from || gene.to() == from)
-			{
-				earliestFrom = Math.min(earliestFrom, gene.marker());
-			}
-			if(gene.to() == to || gene.to() == to)
-			{
-				earliestTo = Math.min(earliestTo, gene.marker());
-			}
-		}
-		return from > to || earliestTo < earliestFrom;
-//		var sources = this.genome.genes().stream().collect(Collectors.groupingBy(NeuralGene::to));
-//		var previous = new ArrayDeque<Integer>();
-//		Optional.ofNullable(sources.get(from)).orElseGet(ArrayList::new).stream()
-//			.map(NeuralGene::from).forEach(previous::add);
-//		var visited = new HashSet<Integer>();
-//		while(!previous.isEmpty())
-//		{
-//			var current = previous.poll();
-//			if(current == to)
-//			{
-//				return Math.random() < 0.9;
-//			}
-//			if(!visited.add(current))
-//			{
-//				continue;
-//			}
-//			var currentSources = sources.get(current);
-//			if(currentSources != null)
-//			{
-//				for(var source : currentSources)
-//				{
-//					if(!visited.contains(source.from()))
-//					{
-//						previous.offer(source.from());
-//					}
-//				}
-//			}
-//		}
-//		return false;
+		return this.genome.createsCycle(from, to);
 	}
 
 	/**
@@ -608,21 +644,14 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 	}
 
 	/**
-	 * Changes a weight
+	 * Perturbs weights in place, each with the network's perturbation
+	 * probability
 	 */
 	public NeuralIndividual mutateWeight()
 	{
-		var genes = this.genome.genes();
-		var connectionGenes = this.genome.connectionGenes();
-		for(var index = 0; index < genes.size(); index++)
-		{
-			var gene = genes.get(index);
-			var updated = gene.withWeight(
-				gene.weight() + random.nextDouble() * this.genome.networkParameters().step() * 2
-					- this.genome.networkParameters().step());
-			genes.set(index, updated);
-			connectionGenes.put(new NeuralConnection(gene.from(), gene.to()), updated);
-		}
+		var parameters = this.genome.networkParameters();
+		this.genome.geneTable().perturbWeights(RandomSource.current(), parameters.step(),
+			parameters.perturbationProbability());
 		return this;// 0.225
 	}
 
@@ -636,12 +665,9 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 		{
 			return this;
 		}
-		var index = random.nextInt(genes.size());
-		var gene = genes.get(index);
-		var newGene = gene
-			.withWeight(random.nextDouble() * this.genome.networkParameters().range() * 2
+		this.genome.geneTable().weight(random.nextInt(genes.size()),
+			random.nextDouble() * this.genome.networkParameters().range() * 2
 				- this.genome.networkParameters().range());
-		this.genome.updateGene(index, newGene);
 		return this;// .025
 	}
 
@@ -670,42 +696,23 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 		return this;// 0.5
 	}
 
-	private record Location(int index, NeuralGene gene)
-	{
-	}
-
 	/**
 	 * Enables a link
 	 */
 	public NeuralIndividual mutateEnable()
 	{
-		var pairs = new ArrayList<Location>();
-		var genes = this.genome.genes();
-		var iter = genes.iterator();
-		var idx = 0;
-		// Just in case the backing for genes() ever changes to LinkedList
-		while(iter.hasNext())
-		{
-			var gene = iter.next();
-			if(!gene.enabled())
-			{
-				pairs.add(new Location(idx, gene));
-			}
-			idx++;
-		}
-		if(pairs.isEmpty())
+		var genes = this.genome.geneTable();
+		if(genes.disabledCount() == 0)
 		{
 			return this;
 		}
-		var flipping = pairs.get(random.nextInt(pairs.size()));
-		var from = flipping.gene.from();
-		var to = flipping.gene.to();
-		var backGene = this.genome.getConnection(to, from);
+		var slot = genes.disabledSlot(random.nextInt(genes.disabledCount()));
+		var backGene = this.genome.getConnection(genes.to(slot), genes.from(slot));
 		if(!this.genome.recurrent() && backGene.isPresent() && backGene.get().enabled())
 		{
 			return this;
 		}
-		this.genome.updateGene(flipping.index, flipping.gene.withEnabled(true));
+		genes.enabled(slot, true);
 		return this;
 	}
 
@@ -715,59 +722,77 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 	 */
 	public NeuralIndividual mutateDisable()
 	{
-		var pairs = new ArrayList<Location>();
-		var genes = this.genome.genes();
-		var iter = genes.iterator();
-		var idx = 0;
-		// Just in case the backing for genes() ever changes to LinkedList
-		while(iter.hasNext())
-		{
-			var gene = iter.next();
-			if(gene.enabled())
-			{
-				pairs.add(new Location(idx, gene));
-			}
-			idx++;
-		}
-		if(pairs.isEmpty())
+		var genes = this.genome.geneTable();
+		if(genes.enabledCount() == 0)
 		{
 			return this;
 		}
-		var flipping = pairs.get(random.nextInt(pairs.size()));
-		for(var gene : genes)
+		var slot = genes.enabledSlot(random.nextInt(genes.enabledCount()));
+		if(genes.enabledOutputs(genes.from(slot)) > 1)
 		{
-			if(gene.enabled() && gene.from() == flipping.gene.from()
-				&& gene.marker() != flipping.gene.marker())
-			{
-				this.genome.updateGene(flipping.index, flipping.gene.withEnabled(false));
-				return this;
-			}
+			genes.enabled(slot, false);
 		}
 		return this;
 	}
 
 	public NeuralIndividual mutateDestroy()
 	{
-		var disabled = new ArrayList<Integer>();
-		var genes = this.genome.genes();
-		var iter = genes.iterator();
-		var idx = 0;
-		// Just in case the backing for genes() ever changes to LinkedList
-		while(iter.hasNext())
+		var genes = this.genome.geneTable();
+		if(genes.disabledCount() == 0)
+		{
+			return this;
+		}
+		genes.remove(genes.disabledSlot(random.nextInt(genes.disabledCount())));
+		return this;
+	}
+
+	/**
+	 * Renumbers the hidden neurons of a population into one dense range, so
+	 * that the ids crossover and destruction leave unused are reused. Every
+	 * genome, and the innovations their trackers know of, go through the same
+	 * mapping, so a connection keeps its marker, and genes that matched before
+	 * still match. Best called at a generation boundary, when no individual is
+	 * being mutated.
+	 */
+	public static void compactNeurons(Collection<? extends NeuralIndividual> individuals)
+	{
+		if(individuals.isEmpty())
 		{
-			var gene = iter.next();
-			if(!gene.enabled())
+			return;
+		}
+		var used = new BitSet();
+		var fixed = 0;
+		for(var individual : individuals)
+		{
+			var genome = individual.genome;
+			fixed = genome.inputs() + genome.outputs() + genome.biases();
+			var genes = genome.geneTable();
+			for(var slot = 0; slot < genes.size(); slot++)
 			{
-				disabled.add(idx);
+				used.set(genes.from(slot));
+				used.set(genes.to(slot));
 			}
-			idx++;
 		}
-		if(disabled.isEmpty())
+		var mapping = new int[Math.max(fixed, used.length())];
+		Arrays.fill(mapping, -1);
+		for(var neuron = 0; neuron < fixed; neuron++)
 		{
-			return this;
+			mapping[neuron] = neuron;
+		}
+		var next = fixed;
+		for(var neuron = used.nextSetBit(fixed); neuron >= 0; neuron = used.nextSetBit(neuron + 1))
+		{
+			mapping[neuron] = next++;
+		}
+		var trackers = Collections.newSetFromMap(new IdentityHashMap<InnovationTracker, Boolean>());
+		for(var individual : individuals)
+		{
+			individual.genome.remap(mapping);
+			if(individual.tracker != null && trackers.add(individual.tracker))
+			{
+				individual.tracker.remap(mapping);
+			}
 		}
-		genes.remove((int) disabled.get(random.nextInt(disabled.size())));
-		return this;
 	}
 
 	public static Builder builder()
@@ -837,4 +862,12 @@ public class NeuralIndividual extends SpeciesIndividual<Double>
 			return ret;
 		}
 	}
+
+	/**
+	 * A mutation operator and where its probability is found
+	 */
+	private record Operator(ToDoubleFunction<IndividualParameters> probability,
+		UnaryOperator<NeuralIndividual> mutation)
+	{
+	}
 }
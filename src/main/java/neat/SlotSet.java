@@ -0,0 +1,58 @@
+package neat;
+
+import java.util.Arrays;
+
+/**
+ * A set of gene slots that adds, removes, and picks its i-th member in
+ * constant time, by keeping its members densely packed and remembering where
+ * each one is
+ */
+final class SlotSet
+{
+	private int[] members = new int[8];
+	// the position of each slot among the members, plus one, or 0 if absent
+	private int[] positions = new int[8];
+	private int size;
+
+	int size()
+	{
+		return this.size;
+	}
+
+	int get(int index)
+	{
+		return this.members[index];
+	}
+
+	void add(int slot)
+	{
+		if(slot >= this.positions.length)
+		{
+			this.positions = Arrays.copyOf(this.positions,
+				Math.max(slot + 1, this.positions.length * 2));
+		}
+		if(this.positions[slot] != 0)
+		{
+			return;
+		}
+		if(this.size == this.members.length)
+		{
+			this.members = Arrays.copyOf(this.members, this.size * 2);
+		}
+		this.members[this.size++] = slot;
+		this.positions[slot] = this.size;
+	}
+
+	void remove(int slot)
+	{
+		if(slot >= this.positions.length || this.positions[slot] == 0)
+		{
+			return;
+		}
+		var index = this.positions[slot] - 1;
+		var last = this.members[--this.size];
+		this.members[index] = last;
+		this.positions[last] = index + 1;
+		this.positions[slot] = 0;
+	}
+}
@@ -2,23 +2,25 @@ package neat;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import genetic.Population;
 import genetic.evaluate.Evaluation;
 import genetic.selection.Selector;
 import utils.Exclude;
+import utils.RandomSource;
 
 public class SpeciatedPopulation<T extends SpeciesIndividual<R>, R extends Number & Comparable<R>>
 {
-	public static final Random random = ThreadLocalRandom.current();
+	public static final RandomGenerator random = RandomSource.shared();
 	private List<Species<T, R>> species = new ArrayList<>();
 	private SpeciationParameters speciationParameters;
 	@Exclude
@@ -107,33 +109,77 @@ public class SpeciatedPopulation<T extends SpeciesIndividual<R>, R extends Numbe
 		return this.species;
 	}
 
-	private void classifyIndividual(T t)
+	private boolean fits(T t, int index)
 	{
-		var matched = false;
-		for(var species : this.species)
+		var threshold = this.speciationParameters.differenceThreshold();
+		var representative = this.species.get(index).representative();
+		return representative.mayDifferBelow(t, this.speciationParameters, threshold)
+			&& representative.difference(t, this.speciationParameters, threshold)
+				.doubleValue() < threshold;
+	}
+
+	/**
+	 * @return The index of the first of the given species, from the given
+	 *         index on and other than the skipped one, whose representative is
+	 *         close enough to the individual, or -1
+	 */
+	private int matchSpecies(T t, int first, int skipped)
+	{
+		for(var index = first; index < this.species.size(); index++)
 		{
-			if(species.representative().difference(t, this.speciationParameters)
-				.doubleValue() < this.speciationParameters.differenceThreshold())
+			if(index != skipped && fits(t, index))
 			{
-				var pop = species.population();
-				pop.add(t);
-				matched = true;
-				break;
+				return index;
 			}
 		}
-		if(!matched)
-		{
-			var newSpecies = new Species<>(this.fitnessMeasure);
-			newSpecies.population(new Population<>(List.of(t)));
-			newSpecies.updateRepresentative();
-			this.species.add(newSpecies);
-		}
+		return -1;
 	}
 
+	/**
+	 * Puts each individual in the species it was bred from, if that one's
+	 * representative is still close enough to it, and otherwise in the first
+	 * species, in order, whose representative is, or in a species of its own.
+	 * <p>
+	 * Representatives of existing species don't change while classifying, so
+	 * individuals are first compared against those in parallel. Only the
+	 * individuals no existing species takes are then compared, in order,
+	 * against the species founded so far. Every individual ends up where
+	 * classifying them one at a time would put it, so differences must be
+	 * safe to compute from several threads at once.
+	 */
 	public void updateSpecies(Stream<T> ts)
 	{
 		this.updateRepresentatives();
-		ts.forEach(this::classifyIndividual);
+		var individuals = ts.collect(Collectors.toList());
+		var existing = this.species.size();
+		var indices = new IdentityHashMap<Species<?, ?>, Integer>();
+		for(var index = 0; index < existing; index++)
+		{
+			indices.put(this.species.get(index), index);
+		}
+		var matches = IntStream.range(0, individuals.size()).parallel().map(index ->
+		{
+			var t = individuals.get(index);
+			var parent = indices.getOrDefault(t.parentSpecies(), -1);
+			return parent >= 0 && fits(t, parent) ? parent : matchSpecies(t, 0, parent);
+		}).toArray();
+		for(var index = 0; index < individuals.size(); index++)
+		{
+			var t = individuals.get(index);
+			t.parentSpecies(null);
+			var match = matches[index] >= 0 ? matches[index] : this.matchSpecies(t, existing, -1);
+			if(match >= 0)
+			{
+				this.species.get(match).population().add(t);
+			}
+			else
+			{
+				var newSpecies = new Species<>(this.fitnessMeasure);
+				newSpecies.population(new Population<>(List.of(t)));
+				newSpecies.updateRepresentative();
+				this.species.add(newSpecies);
+			}
+		}
 		this.species.removeIf(Species::perished);
 		if(this.species.size() > this.speciationParameters.desiredSpecies())
 		{
@@ -257,9 +303,22 @@ public class SpeciatedPopulation<T extends SpeciesIndividual<R>, R extends Numbe
 		{
 			var fitnessList = species.fitnessList();
 			var capacity = species.capacity();
+			this.selector.prepare(fitnessList);
 			for(var i = 0; i < capacity; i++)
 			{
-				ret.accept(this.selector.select(fitnessList));
+				/*
+				 * Every offspring draws from a stream of its own, split in order,
+				 * so its randomness doesn't depend on the draws of the others.
+				 * Offspring are still reproduced one after another, because the
+				 * selector keeps state between picks; the streams only ready
+				 * reproduction to run as parallel tasks once selection allows it.
+				 */
+				var offspringRandom = RandomSource.current().split();
+				var offspring = RandomSource.with(offspringRandom,
+					() -> this.selector.select(fitnessList));
+				// most offspring still fit their parents' species, so it is tried first
+				offspring.parentSpecies(species);
+				ret.accept(offspring);
 			}
 			/*
 			 * Reset must be per species rather than per generation, because
@@ -1,10 +1,19 @@
 package neat;
 
+/**
+ * @param sketchSize
+ *            The number of hash functions in the MinHash sketches that rule out
+ *            species before computing differences, or 0 for none
+ * @param falseRejectionRate
+ *            The chance, for each comparison, of a sketch ruling out a species
+ *            the individual is close enough to
+ */
 public record SpeciationParameters(double excessCoefficient, double disjointCoefficient,
 	double weightDifferenceCoefficient, double weightDifferencePower, int desiredSpecies,
 	double differenceThreshold, double differenceThresholdStep, double crossoverProbability,
 	double eliminationRate, int staleGenerationsAllowed, double deadbeatEvaluation,
-	int preservedSpecies, boolean preservingLifetimeMaxFitness)
+	int preservedSpecies, boolean preservingLifetimeMaxFitness, int sketchSize,
+	double falseRejectionRate)
 {
 
 	public static Builder builder()
@@ -18,7 +27,8 @@ public record SpeciationParameters(double excessCoefficient, double disjointCoef
 			this.weightDifferenceCoefficient, this.weightDifferencePower, this.desiredSpecies,
 			differenceThreshold, this.differenceThresholdStep, this.crossoverProbability,
 			this.eliminationRate, this.staleGenerationsAllowed, this.deadbeatEvaluation,
-			this.preservedSpecies, this.preservingLifetimeMaxFitness);
+			this.preservedSpecies, this.preservingLifetimeMaxFitness, this.sketchSize,
+			this.falseRejectionRate);
 	}
 	public static class Builder
 	{
@@ -35,6 +45,8 @@ public record SpeciationParameters(double excessCoefficient, double disjointCoef
 		private double deadbeatEvaluation;
 		private int preservedSpecies;
 		private boolean preservingLifetimeMaxFitness;
+		private int sketchSize;
+		private double falseRejectionRate = 0.001;
 
 		public Builder withExcessCoefficient(double excessCoefficient)
 		{
@@ -114,13 +126,35 @@ public record SpeciationParameters(double excessCoefficient, double disjointCoef
 			return this;
 		}
 
+		public Builder withSketchSize(int sketchSize)
+		{
+			if(sketchSize < 0)
+			{
+				throw new IllegalArgumentException("Sketch size must not be negative!");
+			}
+			this.sketchSize = sketchSize;
+			return this;
+		}
+
+		public Builder withFalseRejectionRate(double falseRejectionRate)
+		{
+			if(!(falseRejectionRate > 0 && falseRejectionRate <= 1))
+			{
+				throw new IllegalArgumentException(
+					"False rejection rate must be within range (0, 1]!");
+			}
+			this.falseRejectionRate = falseRejectionRate;
+			return this;
+		}
+
 		public SpeciationParameters build()
 		{
 			return new SpeciationParameters(this.excessCoefficient, this.disjointCoefficient,
 				this.weightDifferenceCoefficient, this.weightDifferencePower, this.desiredSpecies,
 				this.differenceThreshold, this.differenceThresholdStep, this.crossoverProbability,
 				this.eliminationRate, this.staleGenerationsAllowed, this.deadbeatEvaluation,
-				this.preservedSpecies, this.preservingLifetimeMaxFitness);
+				this.preservedSpecies, this.preservingLifetimeMaxFitness, this.sketchSize,
+				this.falseRejectionRate);
 		}
 	}
 }
@@ -2,8 +2,7 @@ package neat;
 
 import java.util.List;
 import java.util.OptionalDouble;
-import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
 import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.Stream;
@@ -11,10 +10,11 @@ import java.util.stream.Stream;
 import genetic.Population;
 import genetic.evaluate.Evaluation;
 import utils.Exclude;
+import utils.RandomSource;
 
 public class Species<T extends SpeciesIndividual<R>, R extends Number & Comparable<R>>
 {
-	public static final Random random = ThreadLocalRandom.current();
+	public static final RandomGenerator random = RandomSource.shared();
 	private Population<T> population;
 	private T representative;
 	private double maxFitness;
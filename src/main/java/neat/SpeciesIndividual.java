@@ -1,11 +1,55 @@
 package neat;
 
 import genetic.Individual;
+import utils.Exclude;
 
 public abstract class SpeciesIndividual<R extends Number & Comparable<R>> extends Individual
 {
+	@Exclude
+	private Species<?, ?> parentSpecies;
+
+	protected SpeciesIndividual()
+	{
+		super();
+	}
+
 	public abstract R difference(SpeciesIndividual<R> other, SpeciationParameters parameters);
+
+	/**
+	 * Computes the difference to another individual, exactly while it is below
+	 * the bound. Past it, implementations may stop early with any value at or
+	 * above the bound.
+	 */
+	public R difference(SpeciesIndividual<R> other, SpeciationParameters parameters, double bound)
+	{
+		return difference(other, parameters);
+	}
+
+	/**
+	 * @return Whether the difference to another individual may be below the
+	 *         bound, as far as a quick estimate can tell
+	 */
+	public boolean mayDifferBelow(SpeciesIndividual<R> other, SpeciationParameters parameters,
+		double bound)
+	{
+		return true;
+	}
+
 	public abstract R fitness();
 	public abstract void fitness(R fitness);
 	public abstract void divideFitness(double sharers);
+
+	/**
+	 * @return The species this individual was bred from, until it is
+	 *         classified, or null
+	 */
+	public Species<?, ?> parentSpecies()
+	{
+		return this.parentSpecies;
+	}
+
+	public void parentSpecies(Species<?, ?> parentSpecies)
+	{
+		this.parentSpecies = parentSpecies;
+	}
 }
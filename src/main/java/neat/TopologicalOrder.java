@@ -0,0 +1,323 @@
+package neat;
+
+import java.util.Arrays;
+
+/**
+ * A topological order of the neurons of a genome over its enabled
+ * connections, kept up to date as connections come and go with the online
+ * algorithm of Pearce and Kelly. Adding a connection that agrees with the
+ * order costs nothing; otherwise only the neurons between its ends in the
+ * order are searched and reordered. Whether a connection would close a cycle
+ * is answered by a search bounded the same way.
+ * <p>
+ * Once a cycle is added, as recurrent genomes and crossover may do, there is
+ * no order to keep, and searches are no longer bounded.
+ */
+final class TopologicalOrder
+{
+	private int size;
+	// the position of each neuron in the order
+	private int[] position = new int[0];
+	private int[][] successors = new int[0][];
+	private int[] successorCount = new int[0];
+	private int[][] predecessors = new int[0][];
+	private int[] predecessorCount = new int[0];
+	private boolean acyclic = true;
+	// search state, marked with a new stamp for each search
+	private int[] marks = new int[0];
+	private int stamp;
+	private int[] stack = new int[16];
+	private int[] forward = new int[16];
+	private int[] backward = new int[16];
+
+	private TopologicalOrder()
+	{
+	}
+
+	/**
+	 * Orders the enabled connections of a table from scratch, with Kahn's
+	 * algorithm
+	 */
+	static TopologicalOrder of(GeneTable genes)
+	{
+		var order = new TopologicalOrder();
+		for(var slot = 0; slot < genes.size(); slot++)
+		{
+			order.ensure(Math.max(genes.from(slot), genes.to(slot)));
+			if(genes.enabled(slot))
+			{
+				order.link(genes.from(slot), genes.to(slot));
+			}
+		}
+		var remaining = Arrays.copyOf(order.predecessorCount, order.size);
+		var queue = new int[order.size];
+		var head = 0;
+		var tail = 0;
+		for(var neuron = 0; neuron < order.size; neuron++)
+		{
+			if(remaining[neuron] == 0)
+			{
+				queue[tail++] = neuron;
+			}
+		}
+		while(head < tail)
+		{
+			var current = queue[head++];
+			for(var edge = 0; edge < order.successorCount[current]; edge++)
+			{
+				var successor = order.successors[current][edge];
+				if(--remaining[successor] == 0)
+				{
+					queue[tail++] = successor;
+				}
+			}
+		}
+		order.acyclic = tail == order.size;
+		if(!order.acyclic)
+		{
+			// the neurons left on a cycle go last, in any order
+			for(var neuron = 0; neuron < order.size; neuron++)
+			{
+				if(remaining[neuron] > 0)
+				{
+					queue[tail++] = neuron;
+				}
+			}
+		}
+		for(var index = 0; index < order.size; index++)
+		{
+			order.position[queue[index]] = index;
+		}
+		return order;
+	}
+
+	boolean acyclic()
+	{
+		return this.acyclic;
+	}
+
+	/**
+	 * @return The number of enabled connections from the given neuron
+	 */
+	int outputs(int neuron)
+	{
+		return neuron < this.size ? this.successorCount[neuron] : 0;
+	}
+
+	/**
+	 * @return Whether there is a path of enabled connections from the source
+	 *         to the target, or they are the same neuron
+	 */
+	boolean reaches(int source, int target)
+	{
+		if(source == target)
+		{
+			return true;
+		}
+		if(source >= this.size || target >= this.size)
+		{
+			return false;
+		}
+		var limit = this.acyclic ? this.position[target] : Integer.MAX_VALUE;
+		if(this.position[source] > limit)
+		{
+			return false;
+		}
+		return search(source, target, limit, false) < 0;
+	}
+
+	void add(int from, int to)
+	{
+		ensure(Math.max(from, to));
+		link(from, to);
+		if(!this.acyclic || this.position[from] < this.position[to])
+		{
+			return;
+		}
+		var lower = this.position[to];
+		var upper = this.position[from];
+		var forwardCount = search(to, from, upper, true);
+		if(forwardCount < 0)
+		{
+			this.acyclic = false;
+			return;
+		}
+		var backwardCount = searchBack(from, lower);
+		reorder(forwardCount, backwardCount);
+	}
+
+	void remove(int from, int to)
+	{
+		if(Math.max(from, to) >= this.size)
+		{
+			return;
+		}
+		unlink(this.successors[from], this.successorCount, from, to);
+		unlink(this.predecessors[to], this.predecessorCount, to, from);
+	}
+
+	/**
+	 * Searches forward from a neuron over neurons positioned up to a limit,
+	 * collecting them into the forward array if asked to
+	 *
+	 * @return The number of neurons visited, or -1 if the target was found
+	 */
+	private int search(int source, int target, int limit, boolean collect)
+	{
+		var stamp = nextStamp();
+		var depth = 0;
+		var count = 0;
+		this.stack[depth++] = source;
+		this.marks[source] = stamp;
+		while(depth > 0)
+		{
+			var current = this.stack[--depth];
+			if(collect)
+			{
+				this.forward = grow(this.forward, count + 1);
+				this.forward[count] = current;
+			}
+			count++;
+			for(var edge = 0; edge < this.successorCount[current]; edge++)
+			{
+				var successor = this.successors[current][edge];
+				if(successor == target)
+				{
+					return -1;
+				}
+				if(this.marks[successor] != stamp && this.position[successor] <= limit)
+				{
+					this.marks[successor] = stamp;
+					this.stack = grow(this.stack, depth + 1);
+					this.stack[depth++] = successor;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Collects the neurons reaching the given one from positions from a limit on
+	 *
+	 * @return The number of neurons collected into the backward array
+	 */
+	private int searchBack(int target, int limit)
+	{
+		var stamp = nextStamp();
+		var depth = 0;
+		var count = 0;
+		this.stack[depth++] = target;
+		this.marks[target] = stamp;
+		while(depth > 0)
+		{
+			var current = this.stack[--depth];
+			this.backward = grow(this.backward, count + 1);
+			this.backward[count++] = current;
+			for(var edge = 0; edge < this.predecessorCount[current]; edge++)
+			{
+				var predecessor = this.predecessors[current][edge];
+				if(this.marks[predecessor] != stamp && this.position[predecessor] >= limit)
+				{
+					this.marks[predecessor] = stamp;
+					this.stack = grow(this.stack, depth + 1);
+					this.stack[depth++] = predecessor;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Moves every neuron reaching the new connection before every neuron it
+	 * reaches, reusing the positions they held between them
+	 */
+	private void reorder(int forwardCount, int backwardCount)
+	{
+		var moved = new long[forwardCount + backwardCount];
+		for(var index = 0; index < backwardCount; index++)
+		{
+			moved[index] = (long) this.position[this.backward[index]] << 32 | this.backward[index];
+		}
+		for(var index = 0; index < forwardCount; index++)
+		{
+			moved[backwardCount + index] = (long) this.position[this.forward[index]] << 32
+				| this.forward[index];
+		}
+		Arrays.sort(moved, 0, backwardCount);
+		Arrays.sort(moved, backwardCount, moved.length);
+		var positions = new int[moved.length];
+		for(var index = 0; index < moved.length; index++)
+		{
+			positions[index] = (int) (moved[index] >>> 32);
+		}
+		Arrays.sort(positions);
+		for(var index = 0; index < moved.length; index++)
+		{
+			this.position[(int) moved[index]] = positions[index];
+		}
+	}
+
+	private int nextStamp()
+	{
+		if(++this.stamp == 0)
+		{
+			Arrays.fill(this.marks, 0);
+			this.stamp = 1;
+		}
+		return this.stamp;
+	}
+
+	private void link(int from, int to)
+	{
+		this.successors[from] = grow(this.successors[from], this.successorCount[from] + 1);
+		this.successors[from][this.successorCount[from]++] = to;
+		this.predecessors[to] = grow(this.predecessors[to], this.predecessorCount[to] + 1);
+		this.predecessors[to][this.predecessorCount[to]++] = from;
+	}
+
+	private static void unlink(int[] neighbours, int[] counts, int neuron, int neighbour)
+	{
+		for(var index = 0; index < counts[neuron]; index++)
+		{
+			if(neighbours[index] == neighbour)
+			{
+				neighbours[index] = neighbours[--counts[neuron]];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Makes room for every neuron up to the given one, appending new neurons to
+	 * the order
+	 */
+	private void ensure(int neuron)
+	{
+		if(neuron < this.size)
+		{
+			return;
+		}
+		if(neuron >= this.position.length)
+		{
+			var capacity = Math.max(neuron + 1, this.position.length * 2);
+			this.position = Arrays.copyOf(this.position, capacity);
+			this.successors = Arrays.copyOf(this.successors, capacity);
+			this.successorCount = Arrays.copyOf(this.successorCount, capacity);
+			this.predecessors = Arrays.copyOf(this.predecessors, capacity);
+			this.predecessorCount = Arrays.copyOf(this.predecessorCount, capacity);
+			this.marks = Arrays.copyOf(this.marks, capacity);
+		}
+		for(; this.size <= neuron; this.size++)
+		{
+			this.position[this.size] = this.size;
+			this.successors[this.size] = new int[2];
+			this.predecessors[this.size] = new int[2];
+		}
+	}
+
+	private static int[] grow(int[] array, int length)
+	{
+		return length <= array.length ? array
+			: Arrays.copyOf(array, Math.max(length, array.length * 2));
+	}
+}
@@ -0,0 +1,983 @@
+package network;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+import network.activation.ActivationFunction;
+import network.activation.Activations;
+
+/**
+ * A network whose evaluation order is computed once, at construction. Neurons
+ * are renumbered densely as [inputs|outputs|biases|hidden], and the incoming
+ * connections of every evaluated neuron are stored as compressed sparse rows:
+ * the connections of the {@code i}th evaluated neuron {@code order[i]} are
+ * {@code sources[starts[i]..starts[i+1])} with weights
+ * {@code weights[starts[i]..starts[i+1])}. A compiled network is immutable:
+ * all activation values live in a {@link State}, so any number of threads may
+ * evaluate the same instance at once, each with its own state.
+ * <p>
+ * A recurrent network is evaluated one timestep at a time with
+ * {@link State#step(double[], double[])}: every output and hidden neuron is
+ * updated from the values its inputs had after the previous timestep, and the
+ * input values of the current one.
+ */
+public final class CompiledNetwork
+{
+	private final int inputs;
+	private final int outputs;
+	private final int biases;
+	private final int neurons;
+	private final boolean recurrent;
+	private final ActivationFunction activation;
+	private final SumKernel kernel;
+	// the remaining fields are also read by FusedNetworks
+	// whether some neuron is read before it is updated
+	final boolean cyclic;
+	final int[] order;
+	final int[] starts;
+	final int[] sources;
+	final double[] weights;
+	// rows evaluated together by the batch methods
+	private static final int BLOCK = 128;
+
+	private CompiledNetwork(int inputs, int outputs, int biases, int neurons, boolean recurrent,
+		ActivationFunction activation, SumKernel kernel, boolean cyclic, int[] order, int[] starts,
+		int[] sources, double[] weights)
+	{
+		this.inputs = inputs;
+		this.outputs = outputs;
+		this.biases = biases;
+		this.neurons = neurons;
+		this.recurrent = recurrent;
+		this.activation = activation;
+		this.kernel = kernel;
+		this.cyclic = cyclic;
+		this.order = order;
+		this.starts = starts;
+		this.sources = sources;
+		this.weights = weights;
+	}
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	/**
+	 * @return Scratch space for evaluating this network without allocating
+	 */
+	public State newState()
+	{
+		return new State(this);
+	}
+
+	/**
+	 * Evaluates using a new state. Callers evaluating many times should keep a
+	 * {@link #newState() state} of their own instead
+	 */
+	public double[] evaluate(int[] inputs)
+	{
+		var outputs = new double[this.outputs];
+		newState().evaluate(inputs, outputs);
+		return outputs;
+	}
+
+	/**
+	 * Evaluates using a new state. Callers evaluating many times should keep a
+	 * {@link #newState() state} of their own instead
+	 */
+	public double[] evaluate(double[] inputs)
+	{
+		var outputs = new double[this.outputs];
+		newState().evaluate(inputs, outputs);
+		return outputs;
+	}
+
+	/**
+	 * Evaluates every row of {@code inputs}, using a new state. See
+	 * {@link State#evaluateBatch(double[][], double[][])}
+	 */
+	public double[][] evaluateBatch(double[][] inputs)
+	{
+		var outputs = new double[inputs.length][this.outputs];
+		newState().evaluateBatch(inputs, outputs);
+		return outputs;
+	}
+
+	private void checkLengths(int inputs, int outputs)
+	{
+		checkLengths(inputs, outputs, 1);
+	}
+
+	private void checkLengths(int inputs, int outputs, int rows)
+	{
+		if(this.recurrent)
+		{
+			throw new UnsupportedOperationException(
+				"Recurrent networks can only be evaluated through State::step!");
+		}
+		checkCounts(inputs, outputs, rows);
+	}
+
+	private void checkCounts(int inputs, int outputs, int rows)
+	{
+		if(inputs != this.inputs * rows)
+		{
+			throw new IllegalArgumentException(
+				String.format("Invalid number of input values: expected %d, found %d",
+					this.inputs * rows, inputs));
+		}
+		if(outputs != this.outputs * rows)
+		{
+			throw new IllegalArgumentException(
+				String.format("Invalid number of output values: expected %d, found %d",
+					this.outputs * rows, outputs));
+		}
+	}
+
+	/**
+	 * Evaluates every neuron in order, given input values already in place
+	 */
+	private void evaluate(double[] values, double[] outputs)
+	{
+		Arrays.fill(values, this.inputs + this.outputs, this.inputs + this.outputs + this.biases,
+			1);
+		var order = this.order;
+		var starts = this.starts;
+		var sources = this.sources;
+		var weights = this.weights;
+		var activation = this.activation;
+		var kernel = this.kernel;
+		for(var index = 0; index < order.length; index++)
+		{
+			var sum = kernel.sum(values, sources, weights, starts[index], starts[index + 1]);
+			values[order[index]] = activation.apply(sum);
+		}
+		System.arraycopy(values, this.inputs, outputs, 0, this.outputs);
+	}
+
+	/**
+	 * Updates every neuron once from the values of the previous timestep,
+	 * given the current input values already in place in {@code previous}
+	 */
+	private void step(double[] previous, double[] current, double[] outputs)
+	{
+		var order = this.order;
+		var starts = this.starts;
+		var sources = this.sources;
+		var weights = this.weights;
+		var activation = this.activation;
+		var kernel = this.kernel;
+		for(var index = 0; index < order.length; index++)
+		{
+			var sum = kernel.sum(previous, sources, weights, starts[index], starts[index + 1]);
+			current[order[index]] = activation.apply(sum);
+		}
+		System.arraycopy(current, this.inputs, outputs, 0, this.outputs);
+	}
+
+	/**
+	 * Evaluates up to {@link CompiledNetwork#BLOCK} rows at once, given input
+	 * values already in place. Values are stored neuron-major, so the value of
+	 * neuron {@code n} for row {@code r} is {@code block[n * BLOCK + r]}, and
+	 * each weight is loaded once for all the rows.
+	 */
+	private void evaluateBlock(double[] block, double[] sums, int rows)
+	{
+		for(var bias = this.inputs + this.outputs; bias < this.inputs + this.outputs
+			+ this.biases; bias++)
+		{
+			Arrays.fill(block, bias * BLOCK, bias * BLOCK + rows, 1);
+		}
+		var order = this.order;
+		var starts = this.starts;
+		var sources = this.sources;
+		var weights = this.weights;
+		var activation = this.activation;
+		for(var index = 0; index < order.length; index++)
+		{
+			Arrays.fill(sums, 0, rows, 0);
+			for(var edge = starts[index]; edge < starts[index + 1]; edge++)
+			{
+				var weight = weights[edge];
+				var source = sources[edge] * BLOCK;
+				for(var row = 0; row < rows; row++)
+				{
+					sums[row] += block[source + row] * weight;
+				}
+			}
+			var target = order[index] * BLOCK;
+			for(var row = 0; row < rows; row++)
+			{
+				block[target + row] = activation.apply(sums[row]);
+			}
+		}
+	}
+
+	public int numInputs()
+	{
+		return this.inputs;
+	}
+
+	public int numOutputs()
+	{
+		return this.outputs;
+	}
+
+	public int numBiases()
+	{
+		return this.biases;
+	}
+
+	public int numNeurons()
+	{
+		return this.neurons;
+	}
+
+	public int numConnections()
+	{
+		return this.sources.length;
+	}
+
+	public boolean recurrent()
+	{
+		return this.recurrent;
+	}
+
+	public ActivationFunction activation()
+	{
+		return this.activation;
+	}
+
+	public SumKernel kernel()
+	{
+		return this.kernel;
+	}
+
+	/**
+	 * Generates a class specialized to this network, for networks that will be
+	 * evaluated very many times. Only non-recurrent networks with up to about a
+	 * thousand connections can be generated, as the JIT compiler leaves longer
+	 * methods interpreted.
+	 *
+	 * @return A network that gives the same outputs as this one does with the
+	 *         scalar kernel
+	 */
+	public GeneratedNetwork generate()
+	{
+		return NetworkGenerator.generate(this);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+			"CompiledNetwork[inputs=%s, outputs=%s, biases=%s, neurons=%s, connections=%s, recurrent=%s]",
+			this.inputs, this.outputs, this.biases, this.neurons, this.sources.length,
+			this.recurrent);
+	}
+
+	/**
+	 * Per-caller scratch space for a {@link CompiledNetwork}. Evaluating through
+	 * a state writes into the caller's output array and allocates nothing. A
+	 * state must not be used by more than one thread at a time. For a recurrent
+	 * network, the state also holds the activations carried between timesteps.
+	 */
+	public static final class State
+	{
+		private final CompiledNetwork network;
+		private double[] values;
+		// activations of the previous timestep, for recurrent networks
+		private double[] previous;
+		// batch buffers, allocated on first use
+		private double[] block;
+		private double[] sums;
+
+		private State(CompiledNetwork network)
+		{
+			this.network = network;
+			this.values = new double[network.neurons];
+			if(network.recurrent)
+			{
+				this.previous = new double[network.neurons];
+				this.resetState();
+			}
+		}
+
+		public CompiledNetwork network()
+		{
+			return this.network;
+		}
+
+		public void evaluate(double[] inputs, double[] outputs)
+		{
+			this.network.checkLengths(inputs.length, outputs.length);
+			this.prepare();
+			System.arraycopy(inputs, 0, this.values, 0, inputs.length);
+			this.network.evaluate(this.values, outputs);
+		}
+
+		public void evaluate(int[] inputs, double[] outputs)
+		{
+			this.network.checkLengths(inputs.length, outputs.length);
+			this.prepare();
+			for(var index = 0; index < inputs.length; index++)
+			{
+				this.values[index] = inputs[index];
+			}
+			this.network.evaluate(this.values, outputs);
+		}
+
+		/**
+		 * Advances a recurrent network by one timestep. For a non-recurrent
+		 * network, this is the same as
+		 * {@link State#evaluate(double[], double[])}.
+		 */
+		public void step(double[] inputs, double[] outputs)
+		{
+			var network = this.network;
+			if(!network.recurrent)
+			{
+				this.evaluate(inputs, outputs);
+				return;
+			}
+			network.checkCounts(inputs.length, outputs.length, 1);
+			System.arraycopy(inputs, 0, this.previous, 0, inputs.length);
+			network.step(this.previous, this.values, outputs);
+			var values = this.values;
+			this.values = this.previous;
+			this.previous = values;
+		}
+
+		/**
+		 * Forgets the activations carried between timesteps, as if no step had
+		 * been taken yet
+		 */
+		public void resetState()
+		{
+			var network = this.network;
+			var biases = network.inputs + network.outputs;
+			for(var values : new double[][] { this.values, this.previous })
+			{
+				if(values != null)
+				{
+					Arrays.fill(values, 0);
+					Arrays.fill(values, biases, biases + network.biases, 1);
+				}
+			}
+		}
+
+		/**
+		 * Evaluates {@code rows} rows at once. Both arrays are row-major:
+		 * {@code inputs} holds {@code rows * numInputs()} values and
+		 * {@code outputs} receives {@code rows * numOutputs()} values. Each row
+		 * gets the same outputs that {@link State#evaluate(double[], double[])}
+		 * would give it.
+		 */
+		public void evaluateBatch(double[] inputs, double[] outputs, int rows)
+		{
+			var network = this.network;
+			network.checkLengths(inputs.length, outputs.length, rows);
+			var block = this.block();
+			for(var first = 0; first < rows; first += BLOCK)
+			{
+				var count = Math.min(BLOCK, rows - first);
+				this.prepareBlock();
+				for(var row = 0; row < count; row++)
+				{
+					for(var input = 0; input < network.inputs; input++)
+					{
+						block[input * BLOCK + row] = inputs[(first + row) * network.inputs + input];
+					}
+				}
+				network.evaluateBlock(block, this.sums, count);
+				for(var row = 0; row < count; row++)
+				{
+					for(var output = 0; output < network.outputs; output++)
+					{
+						outputs[(first + row) * network.outputs + output] = block[(network.inputs
+							+ output) * BLOCK + row];
+					}
+				}
+			}
+		}
+
+		/**
+		 * Evaluates each row of {@code inputs} into the same row of
+		 * {@code outputs}. See {@link State#evaluateBatch(double[], double[], int)}
+		 */
+		public void evaluateBatch(double[][] inputs, double[][] outputs)
+		{
+			var network = this.network;
+			if(inputs.length != outputs.length)
+			{
+				throw new IllegalArgumentException(
+					String.format("Invalid number of output rows: expected %d, found %d",
+						inputs.length, outputs.length));
+			}
+			var block = this.block();
+			for(var first = 0; first < inputs.length; first += BLOCK)
+			{
+				var count = Math.min(BLOCK, inputs.length - first);
+				this.prepareBlock();
+				for(var row = 0; row < count; row++)
+				{
+					var values = inputs[first + row];
+					network.checkLengths(values.length, outputs[first + row].length);
+					for(var input = 0; input < network.inputs; input++)
+					{
+						block[input * BLOCK + row] = values[input];
+					}
+				}
+				network.evaluateBlock(block, this.sums, count);
+				for(var row = 0; row < count; row++)
+				{
+					var values = outputs[first + row];
+					for(var output = 0; output < network.outputs; output++)
+					{
+						values[output] = block[(network.inputs + output) * BLOCK + row];
+					}
+				}
+			}
+		}
+
+		private void prepare()
+		{
+			if(this.network.cyclic)
+			{
+				// neurons read before they are updated must not see the last evaluation
+				Arrays.fill(this.values, 0);
+			}
+		}
+
+		private void prepareBlock()
+		{
+			if(this.network.cyclic)
+			{
+				Arrays.fill(this.block, 0);
+			}
+		}
+
+		private double[] block()
+		{
+			if(this.block == null)
+			{
+				this.block = new double[this.network.neurons * BLOCK];
+				this.sums = new double[BLOCK];
+			}
+			return this.block;
+		}
+	}
+
+	/**
+	 * Collects connections between arbitrarily numbered neurons. Ids below
+	 * {@code inputs + outputs + biases} are the input, output, and bias
+	 * neurons, in that order; any other id is a hidden neuron. Adding the same
+	 * connection twice keeps the weight that was added last.
+	 */
+	public static class Builder
+	{
+		private int inputs = 1;
+		private int outputs = 1;
+		private int biases = 1;
+		private boolean recurrent = false;
+		private ActivationFunction activation = Activations.SIGMOID;
+		private SumKernel kernel = null;
+		private boolean pruning = true;
+		private double minimumWeight = 0;
+		private int declared = 0;
+		private int[] hidden = new int[16];
+		private int connections = 0;
+		private int[] froms = new int[16];
+		private int[] tos = new int[16];
+		private double[] weights = new double[16];
+
+		private Builder()
+		{
+		}
+
+		public Builder withInputs(int inputs)
+		{
+			this.inputs = inputs;
+			return this;
+		}
+
+		public Builder withOutputs(int outputs)
+		{
+			this.outputs = outputs;
+			return this;
+		}
+
+		public Builder withBiases(int biases)
+		{
+			this.biases = biases;
+			return this;
+		}
+
+		public Builder withRecurrency(boolean recurrency)
+		{
+			this.recurrent = recurrency;
+			return this;
+		}
+
+		/**
+		 * Sets the function applied to every output and hidden neuron
+		 */
+		public Builder withActivation(ActivationFunction activation)
+		{
+			this.activation = activation;
+			return this;
+		}
+
+		/**
+		 * Sets the kernel computing weighted sums, instead of
+		 * {@link SumKernels#preferred()}
+		 */
+		public Builder withKernel(SumKernel kernel)
+		{
+			this.kernel = kernel;
+			return this;
+		}
+
+		/**
+		 * Sets whether to drop neurons and connections that cannot affect the
+		 * outputs, which is on by default. Pruning never changes the outputs.
+		 */
+		public Builder withPruning(boolean pruning)
+		{
+			this.pruning = pruning;
+			return this;
+		}
+
+		/**
+		 * Drops connections whose weight is smaller in magnitude than
+		 * {@code minimumWeight}, which approximates the network as given
+		 */
+		public Builder withMinimumWeight(double minimumWeight)
+		{
+			this.minimumWeight = minimumWeight;
+			return this;
+		}
+
+		/**
+		 * Numbers a hidden neuron ahead of those first seen in connections,
+		 * which can matter for which neuron goes first when breaking a cycle
+		 */
+		public Builder withHidden(int id)
+		{
+			if(this.declared == this.hidden.length)
+			{
+				this.hidden = Arrays.copyOf(this.hidden, this.declared * 2);
+			}
+			this.hidden[this.declared++] = id;
+			return this;
+		}
+
+		public Builder withConnection(int from, int to, double weight)
+		{
+			if(from == to)
+			{
+				throw new IllegalArgumentException(
+					"Connection from %s to %s is not allowed!".formatted(from, to));
+			}
+			if(this.connections == this.froms.length)
+			{
+				this.froms = Arrays.copyOf(this.froms, this.connections * 2);
+				this.tos = Arrays.copyOf(this.tos, this.connections * 2);
+				this.weights = Arrays.copyOf(this.weights, this.connections * 2);
+			}
+			this.froms[this.connections] = from;
+			this.tos[this.connections] = to;
+			this.weights[this.connections] = weight;
+			this.connections++;
+			return this;
+		}
+
+		public CompiledNetwork build()
+		{
+			var fixed = this.inputs + this.outputs + this.biases;
+			var outputEdge = this.inputs + this.outputs;
+			// number hidden neurons in order of declaration, then of first appearance
+			var ids = new HashMap<Integer, Integer>();
+			var neurons = fixed;
+			for(var index = 0; index < this.declared; index++)
+			{
+				if(this.hidden[index] >= fixed && !ids.containsKey(this.hidden[index]))
+				{
+					ids.put(this.hidden[index], neurons++);
+				}
+			}
+			var froms = new int[this.connections];
+			var tos = new int[this.connections];
+			for(var edge = 0; edge < this.connections; edge++)
+			{
+				var from = this.froms[edge];
+				var to = this.tos[edge];
+				if(from >= fixed && !ids.containsKey(from))
+				{
+					ids.put(from, neurons++);
+				}
+				if(to >= fixed && !ids.containsKey(to))
+				{
+					ids.put(to, neurons++);
+				}
+				froms[edge] = from >= fixed ? ids.get(from) : from;
+				tos[edge] = to >= fixed ? ids.get(to) : to;
+				if(froms[edge] >= this.inputs && froms[edge] < outputEdge)
+				{
+					throw new UnsupportedOperationException(
+						"addOutput not supported for OUTPUT neurons!");
+				}
+				if(tos[edge] < this.inputs || tos[edge] >= outputEdge && tos[edge] < fixed)
+				{
+					throw new UnsupportedOperationException("addInput not supported for %s neurons!"
+						.formatted(tos[edge] < this.inputs ? "INPUT" : "BIAS"));
+				}
+			}
+			// later connections replace earlier ones between the same neurons
+			var edgeWeights = Arrays.copyOf(this.weights, this.connections);
+			var latest = new HashMap<Long, Integer>();
+			for(var edge = 0; edge < this.connections; edge++)
+			{
+				latest.put((long) froms[edge] << 32 | tos[edge], edge);
+			}
+			var inDegree = new int[neurons];
+			var outDegree = new int[neurons];
+			var kept = 0;
+			for(var edge = 0; edge < this.connections; edge++)
+			{
+				if(latest.get((long) froms[edge] << 32 | tos[edge]) == edge
+					&& !(Math.abs(edgeWeights[edge]) < this.minimumWeight))
+				{
+					froms[kept] = froms[edge];
+					tos[kept] = tos[edge];
+					edgeWeights[kept] = edgeWeights[edge];
+					inDegree[tos[kept]]++;
+					outDegree[froms[kept]]++;
+					kept++;
+				}
+			}
+			var inStarts = prefixSums(inDegree);
+			var outStarts = prefixSums(outDegree);
+			var sources = new int[kept];
+			var weights = new double[kept];
+			var targets = new int[kept];
+			// position of each outgoing connection among the incoming ones
+			var incoming = new int[kept];
+			var inFill = Arrays.copyOf(inStarts, neurons);
+			var outFill = Arrays.copyOf(outStarts, neurons);
+			for(var edge = 0; edge < kept; edge++)
+			{
+				sources[inFill[tos[edge]]] = froms[edge];
+				weights[inFill[tos[edge]]] = edgeWeights[edge];
+				incoming[outFill[froms[edge]]] = inFill[tos[edge]]++;
+				targets[outFill[froms[edge]]++] = tos[edge];
+			}
+			var order = this.recurrent ? evaluatedNeurons(neurons)
+				: evaluationOrder(neurons, inStarts, sources, outStarts, targets, incoming);
+			var constant = new boolean[neurons];
+			if(!this.recurrent && this.activation.apply(0) != 0)
+			{
+				order = withConstants(neurons, order, constant);
+			}
+			var reached = reachedNeurons(neurons, order, outStarts, targets);
+			if(this.pruning)
+			{
+				order = liveNeurons(neurons, order, reached, constant, inStarts, sources);
+			}
+			var position = new int[neurons];
+			Arrays.fill(position, -1);
+			for(var index = 0; index < order.length; index++)
+			{
+				position[order[index]] = index;
+			}
+			var starts = new int[order.length + 1];
+			var orderedSources = new int[kept];
+			var orderedWeights = new double[kept];
+			var cyclic = false;
+			for(var index = 0; index < order.length; index++)
+			{
+				var neuron = order[index];
+				var length = 0;
+				// constant neurons read nothing, so their sum is always 0
+				var end = constant[neuron] ? inStarts[neuron] : inStarts[neuron + 1];
+				for(var edge = inStarts[neuron]; edge < end; edge++)
+				{
+					if(reached[sources[edge]])
+					{
+						orderedSources[starts[index] + length] = sources[edge];
+						orderedWeights[starts[index] + length++] = weights[edge];
+						cyclic |= position[sources[edge]] >= index;
+					}
+				}
+				starts[index + 1] = starts[index] + length;
+				sortRow(orderedSources, orderedWeights, starts[index], starts[index + 1]);
+			}
+			return new CompiledNetwork(this.inputs, this.outputs, this.biases, neurons,
+				this.recurrent, this.activation,
+				this.kernel != null ? this.kernel : SumKernels.preferred(), cyclic, order, starts,
+				Arrays.copyOf(orderedSources, starts[order.length]),
+				Arrays.copyOf(orderedWeights, starts[order.length]));
+		}
+
+		/**
+		 * Derives the order in which {@link Network#evaluate(double[])} updates
+		 * neurons, so that both give the same outputs. Neurons are taken in
+		 * passes, starting from the children of the inputs and biases; within a
+		 * pass, the neuron with the fewest remaining inputs goes first, and
+		 * neurons discovered along the way make up the next pass. Neurons that
+		 * are never reached are left out, and keep the activation at 0.
+		 */
+		private int[] evaluationOrder(int neurons, int[] inStarts, int[] sources, int[] outStarts,
+			int[] targets, int[] incoming)
+		{
+			var edges = sources.length;
+			var inLive = new boolean[edges];
+			var outLive = new boolean[edges];
+			Arrays.fill(inLive, true);
+			Arrays.fill(outLive, true);
+			var degree = new int[neurons];
+			for(var neuron = 0; neuron < neurons; neuron++)
+			{
+				degree[neuron] = inStarts[neuron + 1] - inStarts[neuron];
+			}
+			var flagged = new boolean[neurons];
+			var pass = new boolean[neurons];
+			var current = new TreeSet<Integer>();
+			for(var neuron = 0; neuron < neurons; neuron++)
+			{
+				if(!isEvaluated(neuron))
+				{
+					flagged[neuron] = true;
+					for(var edge = outStarts[neuron]; edge < outStarts[neuron + 1]; edge++)
+					{
+						outLive[edge] = false;
+						inLive[incoming[edge]] = false;
+						degree[targets[edge]]--;
+						current.add(targets[edge]);
+					}
+				}
+			}
+			current.forEach(neuron -> pass[neuron] = true);
+			for(var neuron : current)
+			{
+				for(var edge = inStarts[neuron]; edge < inStarts[neuron + 1]; edge++)
+				{
+					if(inLive[edge] && !pass[sources[edge]])
+					{
+						inLive[edge] = false;
+						degree[neuron]--;
+					}
+				}
+			}
+			var order = new int[neurons];
+			var count = 0;
+			// (remaining inputs, neuron) pairs, packed to sort by both at once
+			var queue = new PriorityQueue<Long>();
+			while(!current.isEmpty())
+			{
+				for(var neuron : current)
+				{
+					for(var edge = outStarts[neuron]; edge < outStarts[neuron + 1]; edge++)
+					{
+						outLive[edge] &= !flagged[targets[edge]];
+					}
+					queue.add((long) degree[neuron] << 32 | neuron);
+				}
+				var next = new TreeSet<Integer>();
+				while(!queue.isEmpty())
+				{
+					var neuron = (int) (long) queue.poll();
+					if(flagged[neuron])
+					{
+						continue;
+					}
+					flagged[neuron] = true;
+					order[count++] = neuron;
+					for(var edge = outStarts[neuron]; edge < outStarts[neuron + 1]; edge++)
+					{
+						if(!outLive[edge])
+						{
+							continue;
+						}
+						outLive[edge] = false;
+						var target = targets[edge];
+						if(inLive[incoming[edge]])
+						{
+							inLive[incoming[edge]] = false;
+							degree[target]--;
+						}
+						if(pass[target])
+						{
+							queue.add((long) degree[target] << 32 | target);
+						}
+						else
+						{
+							next.add(target);
+						}
+					}
+				}
+				current.forEach(neuron -> pass[neuron] = false);
+				next.forEach(neuron -> pass[neuron] = true);
+				current = next;
+			}
+			return Arrays.copyOf(order, count);
+		}
+
+		/**
+		 * Puts the evaluated neurons that are never reached ahead of the rest,
+		 * reading nothing, so that they hold the activation at 0 as they do in
+		 * {@link Network}. Only needed when that isn't 0 itself.
+		 */
+		private int[] withConstants(int neurons, int[] order, boolean[] constant)
+		{
+			var ordered = new boolean[neurons];
+			for(var neuron : order)
+			{
+				ordered[neuron] = true;
+			}
+			var constants = IntStream.range(0, neurons)
+				.filter(neuron -> isEvaluated(neuron) && !ordered[neuron]).toArray();
+			for(var neuron : constants)
+			{
+				constant[neuron] = true;
+			}
+			return IntStream.concat(Arrays.stream(constants), Arrays.stream(order)).toArray();
+		}
+
+		/**
+		 * Finds the neurons whose values can be other than 0: the inputs and
+		 * biases, and the neurons they lead to. Without a recurrent network,
+		 * these are exactly the neurons in the evaluation order; with one, a
+		 * neuron that is never reached keeps the value of the activation at 0.
+		 */
+		private boolean[] reachedNeurons(int neurons, int[] order, int[] outStarts, int[] targets)
+		{
+			var reached = new boolean[neurons];
+			var fixed = this.inputs + this.outputs + this.biases;
+			if(!this.pruning || this.recurrent && this.activation.apply(0) != 0)
+			{
+				Arrays.fill(reached, true);
+				return reached;
+			}
+			for(var neuron = 0; neuron < fixed; neuron++)
+			{
+				reached[neuron] = !isEvaluated(neuron);
+			}
+			if(!this.recurrent)
+			{
+				for(var neuron : order)
+				{
+					reached[neuron] = true;
+				}
+				return reached;
+			}
+			var stack = new int[neurons];
+			var size = 0;
+			for(var neuron = 0; neuron < fixed; neuron++)
+			{
+				if(reached[neuron])
+				{
+					stack[size++] = neuron;
+				}
+			}
+			while(size > 0)
+			{
+				var neuron = stack[--size];
+				for(var edge = outStarts[neuron]; edge < outStarts[neuron + 1]; edge++)
+				{
+					if(!reached[targets[edge]])
+					{
+						reached[targets[edge]] = true;
+						stack[size++] = targets[edge];
+					}
+				}
+			}
+			return reached;
+		}
+
+		/**
+		 * Keeps the evaluated neurons that lead to an output, in the same order.
+		 * Such a neuron only reads from others like it, so dropping the rest
+		 * changes none of the values it sees.
+		 */
+		private int[] liveNeurons(int neurons, int[] order, boolean[] reached, boolean[] constant,
+			int[] inStarts, int[] sources)
+		{
+			var live = new boolean[neurons];
+			var stack = new int[neurons];
+			var size = 0;
+			for(var neuron = this.inputs; neuron < this.inputs + this.outputs; neuron++)
+			{
+				live[neuron] = true;
+				stack[size++] = neuron;
+			}
+			while(size > 0)
+			{
+				var neuron = stack[--size];
+				var end = constant[neuron] ? inStarts[neuron] : inStarts[neuron + 1];
+				for(var edge = inStarts[neuron]; edge < end; edge++)
+				{
+					var source = sources[edge];
+					if(reached[source] && !live[source])
+					{
+						live[source] = true;
+						stack[size++] = source;
+					}
+				}
+			}
+			return Arrays.stream(order).filter(neuron -> live[neuron]).toArray();
+		}
+
+		/**
+		 * A recurrent network updates every output and hidden neuron on each
+		 * timestep
+		 */
+		private int[] evaluatedNeurons(int neurons)
+		{
+			return IntStream.range(0, neurons).filter(this::isEvaluated).toArray();
+		}
+
+		private boolean isEvaluated(int neuron)
+		{
+			return neuron >= this.inputs
+				&& (neuron < this.inputs + this.outputs || neuron >= this.inputs + this.outputs
+					+ this.biases);
+		}
+
+		/**
+		 * Sorts the connections of a neuron by source, so that values are read
+		 * in increasing order, and runs of neighboring sources (like the inputs
+		 * of a fully connected network) are contiguous
+		 */
+		private static void sortRow(int[] sources, double[] weights, int from, int to)
+		{
+			for(var edge = from + 1; edge < to; edge++)
+			{
+				var source = sources[edge];
+				var weight = weights[edge];
+				var other = edge - 1;
+				for(; other >= from && sources[other] > source; other--)
+				{
+					sources[other + 1] = sources[other];
+					weights[other + 1] = weights[other];
+				}
+				sources[other + 1] = source;
+				weights[other + 1] = weight;
+			}
+		}
+
+		private static int[] prefixSums(int[] counts)
+		{
+			var sums = new int[counts.length + 1];
+			for(var index = 0; index < counts.length; index++)
+			{
+				sums[index + 1] = sums[index] + counts[index];
+			}
+			return sums;
+		}
+	}
+}
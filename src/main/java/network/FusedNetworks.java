@@ -0,0 +1,276 @@
+package network;
+
+import java.util.Arrays;
+import java.util.List;
+
+import network.activation.ActivationFunction;
+
+/**
+ * Many {@link CompiledNetwork CompiledNetworks} with the same inputs and
+ * outputs, fused into a single set of arrays so that all of them are evaluated
+ * on an input row in one sweep. The values of every network share one array,
+ * laid out as [inputs|biases|network 0|network 1|...], where each network's
+ * segment holds its outputs followed by its hidden neurons. The inputs are
+ * written once per row and read by every network, and the biases are shared
+ * too. Like a compiled network, fused networks are immutable,
+ * and all activation values live in a {@link State}.
+ */
+public final class FusedNetworks
+{
+	private final int networks;
+	private final int inputs;
+	private final int outputs;
+	private final int biases;
+	private final int size;
+	private final ActivationFunction activation;
+	private final SumKernel kernel;
+	// first value of each network's segment, where its outputs are
+	private final int[] bases;
+	// [start, end) of the segments of networks whose values must be reset
+	private final int[] resets;
+	private final int[] order;
+	private final int[] starts;
+	private final int[] sources;
+	private final double[] weights;
+
+	private FusedNetworks(int networks, int inputs, int outputs, int biases, int size,
+		ActivationFunction activation, SumKernel kernel, int[] bases, int[] resets, int[] order, int[] starts,
+		int[] sources, double[] weights)
+	{
+		this.networks = networks;
+		this.inputs = inputs;
+		this.outputs = outputs;
+		this.biases = biases;
+		this.size = size;
+		this.activation = activation;
+		this.kernel = kernel;
+		this.bases = bases;
+		this.resets = resets;
+		this.order = order;
+		this.starts = starts;
+		this.sources = sources;
+		this.weights = weights;
+	}
+
+	/**
+	 * Fuses the given networks, which must all have the same number of inputs
+	 * and outputs and the same activation function, and be non-recurrent. The
+	 * fused networks sum with the kernel of the first one.
+	 */
+	public static FusedNetworks of(List<CompiledNetwork> networks)
+	{
+		if(networks.isEmpty())
+		{
+			throw new IllegalArgumentException("At least one network is required!");
+		}
+		var inputs = networks.get(0).numInputs();
+		var outputs = networks.get(0).numOutputs();
+		var activation = networks.get(0).activation();
+		var biases = 0;
+		var evaluated = 0;
+		var connections = 0;
+		var resets = 0;
+		for(var network : networks)
+		{
+			if(network.recurrent())
+			{
+				throw new UnsupportedOperationException("Recurrent networks cannot be fused!");
+			}
+			if(network.numInputs() != inputs || network.numOutputs() != outputs)
+			{
+				throw new IllegalArgumentException(
+					"Cannot fuse networks with %s inputs and %s outputs with %s"
+						.formatted(network.numInputs(), network.numOutputs(), networks.get(0)));
+			}
+			if(network.activation() != activation)
+			{
+				throw new IllegalArgumentException(
+					"Cannot fuse networks with different activation functions!");
+			}
+			biases = Math.max(biases, network.numBiases());
+			evaluated += network.order.length;
+			connections += network.numConnections();
+			resets += network.cyclic ? 2 : 0;
+		}
+		var bases = new int[networks.size()];
+		var resetRanges = new int[resets];
+		var order = new int[evaluated];
+		var starts = new int[evaluated + 1];
+		var sources = new int[connections];
+		var weights = new double[connections];
+		var size = inputs + biases;
+		var index = 0;
+		var edge = 0;
+		resets = 0;
+		for(var network = 0; network < networks.size(); network++)
+		{
+			var compiled = networks.get(network);
+			var base = size;
+			bases[network] = base;
+			size += compiled.numNeurons() - inputs - compiled.numBiases();
+			if(compiled.cyclic)
+			{
+				resetRanges[resets++] = base;
+				resetRanges[resets++] = size;
+			}
+			for(var local = 0; local < compiled.order.length; local++)
+			{
+				order[index] = slot(compiled, base, compiled.order[local]);
+				for(var from = compiled.starts[local]; from < compiled.starts[local + 1]; from++)
+				{
+					sources[edge] = slot(compiled, base, compiled.sources[from]);
+					weights[edge++] = compiled.weights[from];
+				}
+				starts[++index] = edge;
+			}
+		}
+		return new FusedNetworks(networks.size(), inputs, outputs, biases, size, activation,
+			networks.get(0).kernel(), bases, resetRanges, order, starts, sources, weights);
+	}
+
+	/**
+	 * Maps a neuron of a compiled network to its slot in the fused values.
+	 * Output neurons are never sources, so the mapping keeps the sources of
+	 * each neuron in increasing order.
+	 */
+	private static int slot(CompiledNetwork network, int base, int neuron)
+	{
+		var inputs = network.numInputs();
+		var outputs = network.numOutputs();
+		var biases = network.numBiases();
+		if(neuron < inputs)
+		{
+			return neuron;
+		}
+		if(neuron < inputs + outputs)
+		{
+			return base + neuron - inputs;
+		}
+		if(neuron < inputs + outputs + biases)
+		{
+			return neuron - outputs;
+		}
+		return base + neuron - inputs - biases;
+	}
+
+	/**
+	 * @return Scratch space for evaluating these networks without allocating
+	 */
+	public State newState()
+	{
+		return new State(this);
+	}
+
+	/**
+	 * Evaluates every network on every row of {@code inputs}, using a new state
+	 *
+	 * @return The outputs of each network, indexed as
+	 *         {@code [network][row][output]}
+	 */
+	public double[][][] evaluateBatch(double[][] inputs)
+	{
+		var state = newState();
+		var results = new double[this.networks][inputs.length][this.outputs];
+		var outputs = new double[this.networks * this.outputs];
+		for(var row = 0; row < inputs.length; row++)
+		{
+			state.evaluate(inputs[row], outputs);
+			for(var network = 0; network < this.networks; network++)
+			{
+				System.arraycopy(outputs, network * this.outputs, results[network][row], 0,
+					this.outputs);
+			}
+		}
+		return results;
+	}
+
+	public int numNetworks()
+	{
+		return this.networks;
+	}
+
+	public int numInputs()
+	{
+		return this.inputs;
+	}
+
+	public int numOutputs()
+	{
+		return this.outputs;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format(
+			"FusedNetworks[networks=%s, inputs=%s, outputs=%s, neurons=%s, connections=%s]",
+			this.networks, this.inputs, this.outputs, this.size, this.sources.length);
+	}
+
+	/**
+	 * Per-caller scratch space for {@link FusedNetworks}. A state must not be
+	 * used by more than one thread at a time.
+	 */
+	public static final class State
+	{
+		private final FusedNetworks networks;
+		private final double[] values;
+
+		private State(FusedNetworks networks)
+		{
+			this.networks = networks;
+			this.values = new double[networks.size];
+			Arrays.fill(this.values, networks.inputs, networks.inputs + networks.biases, 1);
+		}
+
+		public FusedNetworks networks()
+		{
+			return this.networks;
+		}
+
+		/**
+		 * Evaluates every network on the same inputs. {@code outputs} receives
+		 * {@code numNetworks() * numOutputs()} values, those of each network
+		 * following those of the previous one.
+		 */
+		public void evaluate(double[] inputs, double[] outputs)
+		{
+			var networks = this.networks;
+			if(inputs.length != networks.inputs)
+			{
+				throw new IllegalArgumentException(
+					String.format("Invalid number of input values: expected %d, found %d",
+						networks.inputs, inputs.length));
+			}
+			if(outputs.length != networks.networks * networks.outputs)
+			{
+				throw new IllegalArgumentException(
+					String.format("Invalid number of output values: expected %d, found %d",
+						networks.networks * networks.outputs, outputs.length));
+			}
+			var values = this.values;
+			System.arraycopy(inputs, 0, values, 0, inputs.length);
+			var resets = networks.resets;
+			for(var range = 0; range < resets.length; range += 2)
+			{
+				Arrays.fill(values, resets[range], resets[range + 1], 0);
+			}
+			var order = networks.order;
+			var starts = networks.starts;
+			var sources = networks.sources;
+			var weights = networks.weights;
+			var activation = networks.activation;
+			var kernel = networks.kernel;
+			for(var index = 0; index < order.length; index++)
+			{
+				var sum = kernel.sum(values, sources, weights, starts[index], starts[index + 1]);
+				values[order[index]] = activation.apply(sum);
+			}
+			for(var network = 0; network < networks.networks; network++)
+			{
+				System.arraycopy(values, networks.bases[network], outputs,
+					network * networks.outputs, networks.outputs);
+			}
+		}
+	}
+}
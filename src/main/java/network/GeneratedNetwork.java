@@ -0,0 +1,76 @@
+package network;
+
+/**
+ * A {@link CompiledNetwork} turned into a class of its own at runtime, see
+ * {@link CompiledNetwork#generate()}. Its evaluation is straight-line code with
+ * every weight as a constant and every neuron value in a local variable, which
+ * the JIT compiler can inline and register-allocate as a whole. It gives the
+ * same outputs as the network it was generated from with the scalar kernel.
+ * Evaluation holds no state outside the call, so any number of threads may
+ * evaluate the same instance at once.
+ */
+public final class GeneratedNetwork
+{
+	private final int inputs;
+	private final int outputs;
+	private final Evaluator evaluator;
+
+	GeneratedNetwork(int inputs, int outputs, Evaluator evaluator)
+	{
+		this.inputs = inputs;
+		this.outputs = outputs;
+		this.evaluator = evaluator;
+	}
+
+	public double[] evaluate(double[] inputs)
+	{
+		var outputs = new double[this.outputs];
+		evaluate(inputs, outputs);
+		return outputs;
+	}
+
+	/**
+	 * Evaluates into the caller's output array, allocating nothing
+	 */
+	public void evaluate(double[] inputs, double[] outputs)
+	{
+		if(inputs.length != this.inputs)
+		{
+			throw new IllegalArgumentException(
+				String.format("Invalid number of input values: expected %d, found %d",
+					this.inputs, inputs.length));
+		}
+		if(outputs.length != this.outputs)
+		{
+			throw new IllegalArgumentException(
+				String.format("Invalid number of output values: expected %d, found %d",
+					this.outputs, outputs.length));
+		}
+		this.evaluator.evaluate(inputs, outputs);
+	}
+
+	public int numInputs()
+	{
+		return this.inputs;
+	}
+
+	public int numOutputs()
+	{
+		return this.outputs;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("GeneratedNetwork[inputs=%s, outputs=%s, class=%s]", this.inputs,
+			this.outputs, this.evaluator.getClass().getName());
+	}
+
+	/**
+	 * Implemented by the generated classes
+	 */
+	interface Evaluator
+	{
+		void evaluate(double[] inputs, double[] outputs);
+	}
+}
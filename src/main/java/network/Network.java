@@ -1,10 +1,10 @@
 package network;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
@@ -13,6 +13,7 @@ import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import network.neuron.Neuron;
+import utils.Exclude;
 import utils.GsonUtils;
 
 public class Network
@@ -23,6 +24,12 @@ public class Network
 	private List<Neuron> hidden;
 	private List<Neuron> neurons;
 	private boolean recurrent;
+	// timestep state for recurrent evaluation, built on first use
+	@Exclude
+	private CompiledNetwork.State state;
+	// the sum of neuron versions the state was compiled at
+	@Exclude
+	private long compiledVersion;
 
 	/**
 	 * @param inputs
@@ -57,11 +64,24 @@ public class Network
 		this.recurrent = net.recurrent;
 	}
 
+	/**
+	 * Evaluation temporarily rewires the neurons of this network, so a network
+	 * must not be evaluated by several threads at once. Use
+	 * {@link Network#compile()} for a form that can be shared between threads.
+	 */
 	public double[] evaluate(int[] inputs)
 	{
-		return evaluate(Arrays.stream(inputs).asDoubleStream().toArray());
+		var inputValues = new double[inputs.length];
+		for(var index = 0; index < inputs.length; index++)
+		{
+			inputValues[index] = inputs[index];
+		}
+		return evaluate(inputValues);
 	}
 
+	/**
+	 * See {@link Network#evaluate(int[])}
+	 */
 	public double[] evaluate(double[] inputs)
 	{
 		if(this.recurrent)
@@ -74,6 +94,12 @@ public class Network
 		}
 	}
 
+	/**
+	 * Advances the network by one timestep, carrying activations over from the
+	 * previous evaluation until {@link Network#reset()}, or until a neuron's
+	 * connections or activation function change, which compiles the network
+	 * anew
+	 */
 	private double[] evaluateRecurrent(double[] inputValues)
 	{
 		if(inputValues.length != numInputs())
@@ -82,7 +108,29 @@ public class Network
 				String.format("Invalid number of input values: expected %d, found %d", numInputs(),
 					inputValues.length));
 		}
-		throw new UnsupportedOperationException("Recurrent evaluation not yet supported!");
+		var version = this.version();
+		if(this.state == null || this.compiledVersion != version)
+		{
+			this.state = compile().newState();
+			this.compiledVersion = version;
+		}
+		var outputValues = new double[numOutputs()];
+		this.state.step(inputValues, outputValues);
+		return outputValues;
+	}
+
+	/**
+	 * @return The sum of the versions of every neuron, which only grows, so it
+	 *         changes whenever any neuron changes
+	 */
+	private long version()
+	{
+		var version = 0L;
+		for(var neuron : this.neurons)
+		{
+			version += neuron.version();
+		}
+		return version;
 	}
 
 	private Set<Neuron> disconnectChildren(Neuron neuron)
@@ -216,6 +264,10 @@ public class Network
 			neuron.unflag();
 			neuron.value(0);
 		}
+		if(this.state != null)
+		{
+			this.state.resetState();
+		}
 	}
 
 	public int numInputs()
@@ -253,6 +305,7 @@ public class Network
 			throw new IllegalArgumentException("Unsupported neuron type: " + n.type());
 		}
 		this.neurons.add(n);
+		this.state = null;
 		return this.neurons.size() - 1;
 	}
 
@@ -267,6 +320,38 @@ public class Network
 		var dest = this.neurons.get(to);
 		dest.addInput(source, weight);
 		source.addOutput(dest, weight);
+		this.state = null;
+	}
+
+	/**
+	 * @return An immutable form of this network, which any number of threads may
+	 *         evaluate at once. Its output and hidden neurons must all share the
+	 *         same activation function.
+	 */
+	public CompiledNetwork compile()
+	{
+		var activations = Stream.of(this.outputs, this.hidden).flatMap(List::stream)
+			.map(Neuron::activation).distinct().toList();
+		if(activations.size() > 1)
+		{
+			throw new UnsupportedOperationException(
+				"Networks with mixed activation functions cannot be compiled!");
+		}
+		var builder = CompiledNetwork.builder().withInputs(numInputs()).withOutputs(numOutputs())
+			.withBiases(numBiases()).withRecurrency(this.recurrent);
+		activations.forEach(builder::withActivation);
+		var ids = new IdentityHashMap<Neuron, Integer>();
+		Stream.of(this.inputs, this.outputs, this.biases, this.hidden).flatMap(List::stream)
+			.forEach(neuron -> ids.put(neuron, ids.size()));
+		this.hidden.forEach(neuron -> builder.withHidden(ids.get(neuron)));
+		for(var neuron : ids.keySet())
+		{
+			for(var entry : neuron.inputs().entrySet())
+			{
+				builder.withConnection(ids.get(entry.getKey()), ids.get(neuron), entry.getValue());
+			}
+		}
+		return builder.build();
 	}
 
 	public String toJson()
@@ -0,0 +1,363 @@
+package network;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.HashMap;
+import java.util.List;
+
+import network.activation.ActivationFunction;
+
+/**
+ * Writes the class file of a {@link GeneratedNetwork.Evaluator} for a
+ * {@link CompiledNetwork}, and defines it as a hidden class of this package.
+ * The generated method has no branches, so the class file needs no stack map
+ * frames. Every evaluated neuron takes two local variable slots after
+ * {@code this}, the inputs, and the outputs.
+ */
+final class NetworkGenerator
+{
+	private static final int VERSION = 61;
+	private static final String EVALUATOR = GeneratedNetwork.Evaluator.class.getName()
+		.replace('.', '/');
+	private static final String ACTIVATION = ActivationFunction.class.getName().replace('.', '/');
+	private static final String ACTIVATION_TYPE = "L" + ACTIVATION + ";";
+	// HotSpot does not compile methods longer than this, which would defeat the purpose
+	private static final int MAX_CODE = 8000;
+	// opcodes
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ALOAD_1 = 0x2b;
+	private static final int ALOAD_2 = 0x2c;
+	private static final int DCONST_0 = 0x0e;
+	private static final int SIPUSH = 0x11;
+	private static final int LDC2_W = 0x14;
+	private static final int DLOAD = 0x18;
+	private static final int DALOAD = 0x31;
+	private static final int DSTORE = 0x39;
+	private static final int DASTORE = 0x52;
+	private static final int DADD = 0x63;
+	private static final int DMUL = 0x6b;
+	private static final int RETURN = 0xb1;
+	private static final int GETFIELD = 0xb4;
+	private static final int PUTFIELD = 0xb5;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int INVOKEINTERFACE = 0xb9;
+	private static final int WIDE = 0xc4;
+	// constant pool tags
+	private static final int UTF8 = 1;
+	private static final int DOUBLE = 6;
+	private static final int CLASS = 7;
+	private static final int FIELD = 9;
+	private static final int METHOD = 10;
+	private static final int INTERFACE_METHOD = 11;
+	private static final int NAME_AND_TYPE = 12;
+
+	private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+	private final DataOutputStream poolOut = new DataOutputStream(this.pool);
+	private final HashMap<List<Object>, Integer> constants = new HashMap<>();
+	private int constantCount = 1;
+
+	private NetworkGenerator()
+	{
+	}
+
+	static GeneratedNetwork generate(CompiledNetwork network)
+	{
+		if(network.recurrent())
+		{
+			throw new UnsupportedOperationException("Recurrent networks cannot be generated!");
+		}
+		if(network.numInputs() > Short.MAX_VALUE || network.numOutputs() > Short.MAX_VALUE)
+		{
+			throw new UnsupportedOperationException(
+				"Too many inputs or outputs to generate %s".formatted(network));
+		}
+		var bytes = new NetworkGenerator().classFile(network);
+		try
+		{
+			var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+			var constructor = lookup.findConstructor(lookup.lookupClass(),
+				MethodType.methodType(void.class, ActivationFunction.class));
+			var evaluator = (GeneratedNetwork.Evaluator) constructor.invoke(network.activation());
+			return new GeneratedNetwork(network.numInputs(), network.numOutputs(), evaluator);
+		}
+		catch(RuntimeException | Error e)
+		{
+			throw e;
+		}
+		catch(Throwable e)
+		{
+			throw new IllegalStateException("Could not define the class for %s".formatted(network),
+				e);
+		}
+	}
+
+	private byte[] classFile(CompiledNetwork network)
+	{
+		var name = NetworkGenerator.class.getPackageName().replace('.', '/') + "/Generated";
+		var thisClass = classConstant(name);
+		var objectClass = classConstant("java/lang/Object");
+		var evaluatorClass = classConstant(EVALUATOR);
+		var activationField = memberConstant(FIELD, name, "activation", ACTIVATION_TYPE);
+		var constructor = constructorCode(activationField);
+		var evaluate = evaluateCode(network, activationField);
+		var constructorName = utf8Constant("<init>");
+		var constructorType = utf8Constant("(" + ACTIVATION_TYPE + ")V");
+		var evaluateName = utf8Constant("evaluate");
+		var evaluateType = utf8Constant("([D[D)V");
+		var fieldName = utf8Constant("activation");
+		var fieldType = utf8Constant(ACTIVATION_TYPE);
+		var code = utf8Constant("Code");
+		try
+		{
+			var bytes = new ByteArrayOutputStream();
+			var out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);
+			out.writeShort(VERSION);
+			out.writeShort(this.constantCount);
+			this.pool.writeTo(out);
+			// final synthetic super
+			out.writeShort(0x1000 | 0x0020 | 0x0010);
+			out.writeShort(thisClass);
+			out.writeShort(objectClass);
+			out.writeShort(1);
+			out.writeShort(evaluatorClass);
+			// private final field
+			out.writeShort(1);
+			out.writeShort(0x0002 | 0x0010);
+			out.writeShort(fieldName);
+			out.writeShort(fieldType);
+			out.writeShort(0);
+			out.writeShort(2);
+			writeMethod(out, constructorName, constructorType, code, constructor);
+			writeMethod(out, evaluateName, evaluateType, code, evaluate);
+			out.writeShort(0);
+			return bytes.toByteArray();
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Method constructorCode(int activationField)
+	{
+		var code = new Code();
+		var objectConstructor = memberConstant(METHOD, "java/lang/Object", "<init>", "()V");
+		code.op(ALOAD_0).op(INVOKESPECIAL).u2(objectConstructor);
+		code.op(ALOAD_0).op(ALOAD_1).op(PUTFIELD).u2(activationField);
+		code.op(RETURN);
+		return new Method(code, 2, 2);
+	}
+
+	/**
+	 * Generates the same sums, in the same order, as the scalar kernel. Inputs
+	 * are read once into locals, biases are folded into their weights, and a
+	 * neuron that is read before it is evaluated reads 0, as it would after a
+	 * reset.
+	 */
+	private Method evaluateCode(CompiledNetwork network, int activationField)
+	{
+		var apply = memberConstant(INTERFACE_METHOD, ACTIVATION, "apply", "(D)D");
+		var inputs = network.numInputs();
+		var outputs = network.numOutputs();
+		var fixed = inputs + outputs + network.numBiases();
+		var assigned = new boolean[network.numNeurons()];
+		var code = new Code();
+		for(var input = 0; input < inputs; input++)
+		{
+			code.op(ALOAD_1).op(SIPUSH).u2(input).op(DALOAD).local(DSTORE, local(input));
+			assigned[input] = true;
+		}
+		for(var index = 0; index < network.order.length; index++)
+		{
+			code.op(ALOAD_0).op(GETFIELD).u2(activationField).op(DCONST_0);
+			for(var edge = network.starts[index]; edge < network.starts[index + 1]; edge++)
+			{
+				var source = network.sources[edge];
+				var weight = network.weights[edge];
+				if(source >= inputs + outputs && source < fixed)
+				{
+					code.op(LDC2_W).u2(doubleConstant(weight)).op(DADD);
+				}
+				else if(assigned[source])
+				{
+					code.local(DLOAD, local(source)).op(LDC2_W).u2(doubleConstant(weight)).op(DMUL)
+						.op(DADD);
+				}
+			}
+			code.op(INVOKEINTERFACE).u2(apply).u1(3).u1(0);
+			code.local(DSTORE, local(network.order[index]));
+			assigned[network.order[index]] = true;
+		}
+		for(var output = 0; output < outputs; output++)
+		{
+			code.op(ALOAD_2).op(SIPUSH).u2(output);
+			if(assigned[inputs + output])
+			{
+				code.local(DLOAD, local(inputs + output));
+			}
+			else
+			{
+				code.op(DCONST_0);
+			}
+			code.op(DASTORE);
+		}
+		code.op(RETURN);
+		if(code.length() > MAX_CODE || local(network.numNeurons()) > 0xFFFF)
+		{
+			throw new UnsupportedOperationException(
+				"Too many neurons or connections to generate %s".formatted(network));
+		}
+		return new Method(code, 8, local(network.numNeurons()));
+	}
+
+	private static int local(int neuron)
+	{
+		return 3 + 2 * neuron;
+	}
+
+	private void writeMethod(DataOutputStream out, int name, int type, int codeName,
+		Method method) throws IOException
+	{
+		var code = method.code().bytes();
+		out.writeShort(0x0001);
+		out.writeShort(name);
+		out.writeShort(type);
+		out.writeShort(1);
+		out.writeShort(codeName);
+		out.writeInt(12 + code.length);
+		out.writeShort(method.stack());
+		out.writeShort(method.locals());
+		out.writeInt(code.length);
+		out.write(code);
+		// no exceptions, no attributes
+		out.writeShort(0);
+		out.writeShort(0);
+	}
+
+	private int utf8Constant(String value)
+	{
+		return constant(List.of(UTF8, value), out ->
+		{
+			out.writeByte(UTF8);
+			out.writeUTF(value);
+		}, 1);
+	}
+
+	private int classConstant(String name)
+	{
+		var utf8 = utf8Constant(name);
+		return constant(List.of(CLASS, name), out ->
+		{
+			out.writeByte(CLASS);
+			out.writeShort(utf8);
+		}, 1);
+	}
+
+	private int doubleConstant(double value)
+	{
+		// keyed by bits, so that -0.0 and NaNs keep their own entries
+		return constant(List.of(DOUBLE, Double.doubleToRawLongBits(value)), out ->
+		{
+			out.writeByte(DOUBLE);
+			out.writeDouble(value);
+		}, 2);
+	}
+
+	private int memberConstant(int tag, String owner, String name, String type)
+	{
+		var ownerClass = classConstant(owner);
+		var nameUtf8 = utf8Constant(name);
+		var typeUtf8 = utf8Constant(type);
+		var nameAndType = constant(List.of(NAME_AND_TYPE, name, type), out ->
+		{
+			out.writeByte(NAME_AND_TYPE);
+			out.writeShort(nameUtf8);
+			out.writeShort(typeUtf8);
+		}, 1);
+		return constant(List.of(tag, owner, name, type), out ->
+		{
+			out.writeByte(tag);
+			out.writeShort(ownerClass);
+			out.writeShort(nameAndType);
+		}, 1);
+	}
+
+	private int constant(List<Object> key, Entry entry, int slots)
+	{
+		var index = this.constants.get(key);
+		if(index != null)
+		{
+			return index;
+		}
+		if(this.constantCount + slots > 65535)
+		{
+			throw new UnsupportedOperationException("Too many distinct weights to generate!");
+		}
+		try
+		{
+			entry.write(this.poolOut);
+		}
+		catch(IOException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+		this.constants.put(key, this.constantCount);
+		this.constantCount += slots;
+		return this.constantCount - slots;
+	}
+
+	private interface Entry
+	{
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private record Method(Code code, int stack, int locals)
+	{
+	}
+
+	private static final class Code
+	{
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		Code op(int opcode)
+		{
+			return u1(opcode);
+		}
+
+		Code u1(int value)
+		{
+			this.bytes.write(value);
+			return this;
+		}
+
+		Code u2(int value)
+		{
+			return u1(value >> 8).u1(value);
+		}
+
+		Code local(int opcode, int index)
+		{
+			if(index > 255)
+			{
+				return op(WIDE).op(opcode).u2(index);
+			}
+			return op(opcode).u1(index);
+		}
+
+		int length()
+		{
+			return this.bytes.size();
+		}
+
+		byte[] bytes()
+		{
+			return this.bytes.toByteArray();
+		}
+	}
+}
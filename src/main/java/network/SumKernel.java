@@ -0,0 +1,23 @@
+package network;
+
+/**
+ * Computes the weighted sums of compiled networks. The scalar kernel in
+ * {@link SumKernels} is always available; others, such as a vectorized one,
+ * are found as services by {@link SumKernels#preferred()}.
+ */
+public interface SumKernel
+{
+	/**
+	 * @return The name by which this kernel is chosen
+	 */
+	String name();
+
+	/**
+	 * The sources in {@code [from, to)} are strictly increasing, so a kernel
+	 * may load them as one block when they are also consecutive
+	 *
+	 * @return The sum of {@code values[sources[edge]] * weights[edge]} over
+	 *         every {@code edge} in {@code [from, to)}
+	 */
+	double sum(double[] values, int[] sources, double[] weights, int from, int to);
+}
@@ -0,0 +1,77 @@
+package network;
+
+import java.util.NoSuchElementException;
+import java.util.ServiceLoader;
+
+/**
+ * Finds {@link SumKernel SumKernels}. The kernel compiled networks use by
+ * default is named by the {@value SumKernels#PROPERTY} system property; when it
+ * is not set, the first kernel provided as a service is preferred over the
+ * scalar one.
+ */
+public final class SumKernels
+{
+	public static final String PROPERTY = "neatj.kernel";
+	private static final SumKernel SCALAR = new ScalarKernel();
+	private static volatile SumKernel preferred;
+
+	private SumKernels()
+	{
+	}
+
+	/**
+	 * @return The kernel that is always available, which adds up the products
+	 *         in order
+	 */
+	public static SumKernel scalar()
+	{
+		return SCALAR;
+	}
+
+	public static SumKernel forName(String name)
+	{
+		if(SCALAR.name().equals(name))
+		{
+			return SCALAR;
+		}
+		return ServiceLoader.load(SumKernel.class).stream().map(ServiceLoader.Provider::get)
+			.filter(kernel -> kernel.name().equals(name)).findFirst().orElseThrow(
+				() -> new NoSuchElementException("No kernel named %s!".formatted(name)));
+	}
+
+	/**
+	 * @return The kernel compiled networks use unless told otherwise
+	 */
+	public static SumKernel preferred()
+	{
+		var kernel = preferred;
+		if(kernel == null)
+		{
+			var name = System.getProperty(PROPERTY);
+			kernel = name != null ? forName(name)
+				: ServiceLoader.load(SumKernel.class).findFirst().orElse(SCALAR);
+			preferred = kernel;
+		}
+		return kernel;
+	}
+
+	private static final class ScalarKernel implements SumKernel
+	{
+		@Override
+		public String name()
+		{
+			return "scalar";
+		}
+
+		@Override
+		public double sum(double[] values, int[] sources, double[] weights, int from, int to)
+		{
+			var sum = 0d;
+			for(var edge = from; edge < to; edge++)
+			{
+				sum += values[sources[edge]] * weights[edge];
+			}
+			return sum;
+		}
+	}
+}
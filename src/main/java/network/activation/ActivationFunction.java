@@ -0,0 +1,12 @@
+package network.activation;
+
+/**
+ * Function applied to the weighted sum of a neuron's inputs. Implementations
+ * must be pure and thread-safe, as one instance is shared by every neuron and
+ * network using it.
+ */
+@FunctionalInterface
+public interface ActivationFunction
+{
+	double apply(double x);
+}
@@ -0,0 +1,196 @@
+package network.activation;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Registry of {@link ActivationFunction ActivationFunctions} by name, holding
+ * the built-in functions below and any {@link Activations#register registered}
+ * ones.
+ * <p>
+ * The steepened sigmoid {@code 2/(1+exp(-4.9x))-1} is exactly
+ * {@code tanh(2.45x)}, which both approximations are measured against over
+ * the whole real line:
+ * <ul>
+ * <li>{@link Activations#SIGMOID_TABLE} interpolates linearly between 4096
+ * samples on [-4, 4] and is -1 or 1 outside it. Its error is at most
+ * {@code h^2/8 * max|f''|}, about 2.2e-6, for a step {@code h} of 1/512.</li>
+ * <li>{@link Activations#SIGMOID_RATIONAL} is the [7/6] continued-fraction
+ * approximation of tanh, clamped to -1 or 1 from |2.45x| = 5 on. Its error is at
+ * most 9.7e-5.</li>
+ * </ul>
+ * Neurons persist their function by its registered name, so custom functions
+ * must be registered under the same name before saving and loading.
+ */
+public final class Activations
+{
+	/**
+	 * The steepened sigmoid used since the original NEAT, ranging over (-1, 1)
+	 */
+	public static final ActivationFunction SIGMOID = x -> 2d / (1d + Math.exp(-4.9 * x)) - 1;
+	public static final ActivationFunction TANH = Math::tanh;
+	public static final ActivationFunction RELU = x -> Math.max(0, x);
+	public static final ActivationFunction IDENTITY = x -> x;
+	public static final ActivationFunction SIGMOID_TABLE = new SigmoidTable();
+	public static final ActivationFunction SIGMOID_RATIONAL = Activations::rationalSigmoid;
+	private static final Map<String, ActivationFunction> registry = new ConcurrentHashMap<>();
+
+	static
+	{
+		register("sigmoid", SIGMOID);
+		register("tanh", TANH);
+		register("relu", RELU);
+		register("identity", IDENTITY);
+		register("sigmoid-table", SIGMOID_TABLE);
+		register("sigmoid-rational", SIGMOID_RATIONAL);
+	}
+
+	private Activations()
+	{
+	}
+
+	/**
+	 * Registers a function under a name not yet in use
+	 */
+	public static void register(String name, ActivationFunction function)
+	{
+		if(registry.putIfAbsent(name, function) != null)
+		{
+			throw new IllegalArgumentException(
+				"An activation function named %s already exists!".formatted(name));
+		}
+	}
+
+	public static ActivationFunction forName(String name)
+	{
+		var function = registry.get(name);
+		if(function == null)
+		{
+			throw new NoSuchElementException("No activation function named %s!".formatted(name));
+		}
+		return function;
+	}
+
+	/**
+	 * @return The name a function is registered under
+	 */
+	public static String nameOf(ActivationFunction function)
+	{
+		for(var entry : registry.entrySet())
+		{
+			if(entry.getValue() == function)
+			{
+				return entry.getKey();
+			}
+		}
+		throw new NoSuchElementException(
+			"Activation function %s is not registered!".formatted(function));
+	}
+
+	public static Set<String> names()
+	{
+		return Set.copyOf(registry.keySet());
+	}
+
+	private static double rationalSigmoid(double x)
+	{
+		var u = 2.45 * x;
+		if(u >= 5)
+		{
+			return 1;
+		}
+		if(u <= -5)
+		{
+			return -1;
+		}
+		var u2 = u * u;
+		var result = u * (135135 + u2 * (17325 + u2 * (378 + u2)))
+			/ (135135 + u2 * (62370 + u2 * (3150 + 28 * u2)));
+		return Math.max(-1, Math.min(1, result));
+	}
+
+	/**
+	 * Writes functions as their registered name, leaving out the default
+	 * {@link #SIGMOID} so networks saved before functions were persisted read
+	 * and write the same
+	 */
+	public static final class Adapter extends TypeAdapter<ActivationFunction>
+	{
+		public Adapter()
+		{
+			super();
+		}
+
+		@Override
+		public void write(JsonWriter out, ActivationFunction function) throws IOException
+		{
+			if(function == null || function == SIGMOID)
+			{
+				out.nullValue();
+				return;
+			}
+			out.value(nameOf(function));
+		}
+
+		@Override
+		public ActivationFunction read(JsonReader in) throws IOException
+		{
+			if(in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return SIGMOID;
+			}
+			var name = in.nextString();
+			try
+			{
+				return forName(name);
+			}
+			catch(NoSuchElementException e)
+			{
+				throw new JsonParseException(e.getMessage(), e);
+			}
+		}
+	}
+
+	private static final class SigmoidTable implements ActivationFunction
+	{
+		private static final double RANGE = 4;
+		private static final int STEPS = 4096;
+		private static final double SCALE = STEPS / (2 * RANGE);
+		private final double[] table = new double[STEPS + 1];
+
+		private SigmoidTable()
+		{
+			for(var index = 0; index <= STEPS; index++)
+			{
+				this.table[index] = SIGMOID.apply(index / SCALE - RANGE);
+			}
+		}
+
+		@Override
+		public double apply(double x)
+		{
+			if(x >= RANGE)
+			{
+				return 1;
+			}
+			if(x <= -RANGE)
+			{
+				return -1;
+			}
+			var position = (x + RANGE) * SCALE;
+			var index = Math.min((int) position, STEPS - 1);
+			var fraction = position - index;
+			return this.table[index] + (this.table[index + 1] - this.table[index]) * fraction;
+		}
+	}
+}
@@ -0,0 +1 @@
+package network.activation;
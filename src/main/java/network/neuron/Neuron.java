@@ -3,13 +3,27 @@ package network.neuron;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.google.gson.annotations.JsonAdapter;
+
+import network.activation.ActivationFunction;
+import network.activation.Activations;
+import utils.Exclude;
+
 public class Neuron
 {
 	private Map<Neuron, Double> inputs;
 	private Map<Neuron, Double> outputs;
 	private double value;
+	// value as seen by other neurons, computed once per assignment, or NaN until then
+	@Exclude
+	private double activated = Double.NaN;
+	@JsonAdapter(value = Activations.Adapter.class, nullSafe = false)
+	private ActivationFunction activation = Activations.SIGMOID;
 	private boolean flagged; // relatively useful flag for any NN processing
 	private Type type = Type.HIDDEN;
+	// counts changes to connections, activation and type, for networks caching a compiled form
+	@Exclude
+	private int version;
 
 	public Neuron()
 	{
@@ -66,10 +80,23 @@ public class Neuron
 
 	public Neuron withType(Type type)
 	{
-		this.type = type;
+		this.type(type);
+		return this;
+	}
+
+	public Neuron withActivation(ActivationFunction activation)
+	{
+		this.activation = activation;
+		this.version++;
+		this.value(this.value);
 		return this;
 	}
 
+	public ActivationFunction activation()
+	{
+		return this.activation;
+	}
+
 	public void addInput(Neuron input, double weight)
 	{
 		if(this.isBias() || this.isInput())
@@ -83,6 +110,8 @@ public class Neuron
 		}
 		this.inputs.put(input, weight);
 		input.outputs.put(this, weight);
+		this.version++;
+		input.version++;
 	}
 
 	public void addOutput(Neuron output, double weight)
@@ -98,18 +127,34 @@ public class Neuron
 		}
 		this.outputs.put(output, weight);
 		output.inputs.put(this, weight);
+		this.version++;
+		output.version++;
 	}
 
 	public void dropInput(Neuron input)
 	{
 		this.inputs.remove(input);
 		input.outputs.remove(this);
+		this.version++;
+		input.version++;
 	}
 
 	public void dropOutput(Neuron output)
 	{
 		this.outputs.remove(output);
 		output.inputs.remove(this);
+		this.version++;
+		output.version++;
+	}
+
+	/**
+	 * @return How many times the connections, activation function or type of
+	 *         this neuron changed through its methods. Writing to the maps of
+	 *         {@link #inputs()} and {@link #outputs()} directly is not counted.
+	 */
+	public int version()
+	{
+		return this.version;
 	}
 
 	public Map<Neuron, Double> inputs()
@@ -125,20 +170,23 @@ public class Neuron
 	public void value(double value)
 	{
 		this.value = value;
+		this.activated = this.isHidden() || this.isOutput() ? this.activation.apply(value) : value;
 	}
 
 	public double value()
 	{
-		if(this.isHidden() || this.isOutput())
+		if(Double.isNaN(this.activated))
 		{
-			return sigmoid(this.value);
+			this.value(this.value);
 		}
-		return this.value;
+		return this.activated;
 	}
 
 	public void type(Type type)
 	{
 		this.type = type;
+		this.version++;
+		this.value(this.value);
 	}
 
 	public Type type()
@@ -153,12 +201,7 @@ public class Neuron
 		{
 			sum += entry.getKey().value() * entry.getValue();
 		}
-		this.value = sum;
-	}
-
-	private double sigmoid(double x)
-	{
-		return 2d / (1d + Math.exp(-4.9 * x)) - 1;
+		this.value(sum);
 	}
 
 	public boolean isFlagged()
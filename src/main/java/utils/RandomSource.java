@@ -0,0 +1,93 @@
+package utils;
+
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
+import java.util.random.RandomGenerator;
+
+/**
+ * Where all randomness in the library comes from. Every thread draws from a
+ * {@link SplittableRandom} of its own, so threads never contend on a shared
+ * seed. Those generators are split from one root, which {@link #seed(long)}
+ * makes reproducible.
+ * <p>
+ * A thread's generator depends on when it first drew, which is not
+ * reproducible across threads. For reproducible parallel work, split one
+ * generator per task up front, in a fixed order, and run each task
+ * {@link #with(SplittableRandom, Supplier) with} its own generator; the
+ * results then no longer depend on which thread ran which task.
+ */
+public final class RandomSource
+{
+	private static final RandomGenerator shared = () -> current().nextLong();
+	private static final ThreadLocal<Generator> current = new ThreadLocal<>();
+	private static SplittableRandom root = new SplittableRandom();
+	private static volatile int epoch;
+
+	private RandomSource()
+	{
+	}
+
+	/**
+	 * Restarts every thread's randomness from the given seed. The calling
+	 * thread draws from the first generator split from it, and other threads
+	 * from later ones, once they next draw.
+	 */
+	public static synchronized void seed(long seed)
+	{
+		root = new SplittableRandom(seed);
+		epoch++;
+		current.set(new Generator(root.split(), epoch));
+	}
+
+	/**
+	 * @return The generator of the calling thread
+	 */
+	public static SplittableRandom current()
+	{
+		var generator = current.get();
+		if(generator == null || generator.epoch() != epoch)
+		{
+			generator = split();
+			current.set(generator);
+		}
+		return generator.random();
+	}
+
+	/**
+	 * @return A generator drawing from whichever generator the calling thread
+	 *         has at the time, for keeping in static fields. Each draw looks the
+	 *         generator up again, so loops drawing many numbers should draw
+	 *         from {@link #current()} instead.
+	 */
+	public static RandomGenerator shared()
+	{
+		return shared;
+	}
+
+	/**
+	 * Runs a task with the given generator as the calling thread's generator,
+	 * restoring the previous one afterwards
+	 */
+	public static <T> T with(SplittableRandom random, Supplier<T> task)
+	{
+		var previous = current.get();
+		current.set(new Generator(random, epoch));
+		try
+		{
+			return task.get();
+		}
+		finally
+		{
+			current.set(previous);
+		}
+	}
+
+	private static synchronized Generator split()
+	{
+		return new Generator(root.split(), epoch);
+	}
+
+	private record Generator(SplittableRandom random, int epoch)
+	{
+	}
+}
@@ -2,6 +2,7 @@ package utils;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.RecordComponent;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 
@@ -33,7 +34,11 @@ public class RecordDeserializer
 				{
 					types.add(component.getType());
 					var componentElem = obj.get(component.getName());
-					if(componentElem.isJsonObject())
+					if(componentElem == null)
+					{
+						params.add(defaultValue(clazz, component, json));
+					}
+					else if(componentElem.isJsonObject())
 					{
 						params.add(context.deserialize(componentElem.getAsJsonObject(),
 							component.getGenericType()));
@@ -72,4 +77,25 @@ public class RecordDeserializer
 			}
 		};
 	}
+
+	/**
+	 * Takes a component missing from older JSON from what the record's builder
+	 * defaults to, if the record has one
+	 */
+	private static Object defaultValue(Class<?> clazz, RecordComponent component,
+		JsonElement json)
+	{
+		try
+		{
+			var builder = clazz.getMethod("builder").invoke(null);
+			var defaults = builder.getClass().getMethod("build").invoke(builder);
+			return component.getAccessor().invoke(defaults);
+		}
+		catch(NoSuchMethodException | SecurityException | IllegalAccessException
+			| IllegalArgumentException | InvocationTargetException e)
+		{
+			throw new JsonParseException(
+				"Missing %s in %s!".formatted(component.getName(), json), e);
+		}
+	}
 }
@@ -0,0 +1,90 @@
+package test;
+
+import java.util.NoSuchElementException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import network.CompiledNetwork;
+import network.activation.Activations;
+import network.neuron.Neuron;
+import utils.GsonUtils;
+
+public class ActivationTest
+{
+	@Test
+	public void testApproximationErrors()
+	{
+		var tableError = 0d;
+		var rationalError = 0d;
+		for(var i = -1_000_000; i <= 1_000_000; i++)
+		{
+			var x = i * 1e-5;
+			var exact = Activations.SIGMOID.apply(x);
+			tableError = Math.max(tableError, Math.abs(Activations.SIGMOID_TABLE.apply(x) - exact));
+			rationalError = Math.max(rationalError,
+				Math.abs(Activations.SIGMOID_RATIONAL.apply(x) - exact));
+		}
+		Assertions.assertTrue(tableError < 2.3e-6, "Table error: " + tableError);
+		Assertions.assertTrue(rationalError < 9.7e-5, "Rational error: " + rationalError);
+		Assertions.assertEquals(1, Activations.SIGMOID_TABLE.apply(1e9));
+		Assertions.assertEquals(-1, Activations.SIGMOID_RATIONAL.apply(-1e9));
+	}
+
+	@Test
+	public void testRegistry()
+	{
+		Assertions.assertSame(Activations.RELU, Activations.forName("relu"));
+		Assertions.assertThrows(NoSuchElementException.class, () -> Activations.forName("none"));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> Activations.register("tanh", Math::tanh));
+		Activations.register("softsign", x -> x / (1 + Math.abs(x)));
+		Assertions.assertEquals(0.5, Activations.forName("softsign").apply(1));
+		Assertions.assertTrue(Activations.names().contains("softsign"));
+		Assertions.assertEquals("relu", Activations.nameOf(Activations.RELU));
+		Assertions.assertThrows(NoSuchElementException.class,
+			() -> Activations.nameOf(x -> x));
+	}
+
+	@Test
+	public void testPersistence()
+	{
+		var neuron = Neuron.newHidden().withActivation(Activations.TANH);
+		neuron.value(0.5);
+		var json = GsonUtils.toJson(neuron);
+		Assertions.assertTrue(json.contains("\"tanh\""), json);
+		// the activated value is computed again rather than stored
+		Assertions.assertFalse(json.contains("activated"), json);
+		var read = GsonUtils.fromJson(json, Neuron.class);
+		Assertions.assertSame(Activations.TANH, read.activation());
+		Assertions.assertEquals(Math.tanh(0.5), read.value());
+		// the default is left out, so older files read the same
+		json = GsonUtils.toJson(Neuron.newHidden());
+		Assertions.assertFalse(json.contains("activation"), json);
+		Assertions.assertSame(Activations.SIGMOID,
+			GsonUtils.fromJson(json, Neuron.class).activation());
+		var unregistered = Neuron.newHidden().withActivation(x -> x);
+		Assertions.assertThrows(NoSuchElementException.class,
+			() -> GsonUtils.toJson(unregistered));
+	}
+
+	@Test
+	public void testActivations()
+	{
+		var input = Neuron.newInput();
+		var hidden = Neuron.newHidden().withActivation(Activations.RELU);
+		hidden.addInput(input, -2);
+		input.value(1.5);
+		Assertions.assertEquals(1.5, input.value());
+		hidden.update();
+		Assertions.assertEquals(0, hidden.value());
+		hidden.withActivation(Activations.IDENTITY);
+		Assertions.assertEquals(-3, hidden.value());
+		// inputs[0] outputs[1] biases[2] hidden[3]
+		var compiled = CompiledNetwork.builder().withActivation(Activations.TANH)
+			.withConnection(0, 3, 2).withConnection(2, 3, -1).withConnection(3, 1, 0.5).build();
+		Assertions.assertSame(Activations.TANH, compiled.activation());
+		Assertions.assertEquals(Math.tanh(Math.tanh(2 * 0.75 - 1) * 0.5),
+			compiled.evaluate(new double[] { 0.75 })[0]);
+	}
+}
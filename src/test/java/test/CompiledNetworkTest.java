@@ -0,0 +1,366 @@
+package test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import neat.IndividualParameters;
+import neat.InnovationTracker;
+import neat.NetworkParameters;
+import neat.NeuralIndividual;
+import network.CompiledNetwork;
+import network.FusedNetworks;
+import network.Network;
+import network.SumKernels;
+import network.activation.ActivationFunction;
+import network.activation.Activations;
+import network.neuron.Neuron;
+
+public class CompiledNetworkTest
+{
+	@Test
+	public void testMatchesNetwork()
+	{
+		var random = new Random(42);
+		for(var individual : evolvedIndividuals(50, 200))
+		{
+			var network = individual.genome().toNetwork(Neuron::newHidden);
+			var compiled = individual.genome().compile();
+			for(var i = 0; i < 10; i++)
+			{
+				var inputs = new double[] { random.nextDouble(), random.nextDouble() * 2 - 1,
+						random.nextInt(2) };
+				Assertions.assertArrayEquals(network.evaluate(inputs), compiled.evaluate(inputs),
+					1e-12);
+			}
+		}
+	}
+
+	@Test
+	public void testBuilder()
+	{
+		// inputs[0, 1] outputs[2] biases[3] hidden[10, 20]
+		var compiled = CompiledNetwork.builder().withInputs(2).withOutputs(1).withBiases(1)
+			.withConnection(10, 2, 1).withConnection(0, 20, 0.5).withConnection(20, 10, 2)
+			.withConnection(1, 10, -1).withConnection(3, 2, 0.25).withConnection(3, 2, 0.5)
+			.build();
+		Assertions.assertEquals(6, compiled.numNeurons());
+		Assertions.assertEquals(5, compiled.numConnections());
+		var hidden20 = sigmoid(0.5 * 1);
+		var hidden10 = sigmoid(2 * hidden20 - 1 * 2);
+		var output = sigmoid(hidden10 + 0.5);
+		Assertions.assertEquals(output, compiled.evaluate(new double[] { 1, 2 })[0], 1e-12);
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> compiled.evaluate(new double[] { 1 }));
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> CompiledNetwork.builder().withConnection(5, 5, 1));
+		Assertions.assertThrows(UnsupportedOperationException.class,
+			() -> CompiledNetwork.builder().withConnection(1, 0, 1).build());
+		// no other kernels are provided to the core's tests
+		Assertions.assertSame(SumKernels.scalar(), compiled.kernel());
+		Assertions.assertSame(SumKernels.scalar(), SumKernels.forName("scalar"));
+		Assertions.assertThrows(NoSuchElementException.class, () -> SumKernels.forName("none"));
+	}
+
+	@Test
+	public void testState()
+	{
+		var random = new Random(7);
+		for(var individual : evolvedIndividuals(20, 100))
+		{
+			var compiled = individual.genome().compile();
+			var state = compiled.newState();
+			var outputs = new double[compiled.numOutputs()];
+			for(var i = 0; i < 10; i++)
+			{
+				var inputs = new int[] { random.nextInt(2), random.nextInt(2), random.nextInt(2) };
+				state.evaluate(inputs, outputs);
+				Assertions.assertArrayEquals(compiled.evaluate(inputs), outputs);
+			}
+			Assertions.assertThrows(IllegalArgumentException.class,
+				() -> state.evaluate(new double[3], new double[1]));
+		}
+	}
+
+	@Test
+	public void testSharedBetweenThreads()
+	{
+		var compiled = evolvedIndividuals(1, 300)[0].genome().compile();
+		var cases = new double[1000][];
+		var expected = new double[cases.length][];
+		var random = new Random(3);
+		for(var i = 0; i < cases.length; i++)
+		{
+			cases[i] = new double[] { random.nextDouble(), random.nextDouble(), random.nextDouble() };
+			expected[i] = compiled.evaluate(cases[i]);
+		}
+		IntStream.range(0, 100_000).parallel().forEach(i ->
+		{
+			var index = i % cases.length;
+			Assertions.assertArrayEquals(expected[index], compiled.evaluate(cases[index]));
+		});
+	}
+
+	@Test
+	public void testBatch()
+	{
+		var random = new Random(11);
+		for(var individual : evolvedIndividuals(20, 200))
+		{
+			var compiled = individual.genome().compile();
+			// more rows than fit in a single block
+			var inputs = new double[300][];
+			for(var i = 0; i < inputs.length; i++)
+			{
+				inputs[i] = new double[] { random.nextDouble(), random.nextDouble() * 2 - 1,
+						random.nextInt(2) };
+			}
+			var outputs = compiled.evaluateBatch(inputs);
+			for(var i = 0; i < inputs.length; i++)
+			{
+				Assertions.assertArrayEquals(compiled.evaluate(inputs[i]), outputs[i]);
+			}
+			var flatInputs = new double[inputs.length * compiled.numInputs()];
+			for(var i = 0; i < inputs.length; i++)
+			{
+				System.arraycopy(inputs[i], 0, flatInputs, i * compiled.numInputs(),
+					compiled.numInputs());
+			}
+			var flatOutputs = new double[inputs.length * compiled.numOutputs()];
+			compiled.newState().evaluateBatch(flatInputs, flatOutputs, inputs.length);
+			for(var i = 0; i < inputs.length; i++)
+			{
+				for(var j = 0; j < compiled.numOutputs(); j++)
+				{
+					Assertions.assertEquals(outputs[i][j],
+						flatOutputs[i * compiled.numOutputs() + j]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testFused()
+	{
+		var random = new Random(5);
+		var compiled = Arrays.stream(evolvedIndividuals(30, 200))
+			.map(individual -> individual.genome().compile()).toList();
+		var fused = FusedNetworks.of(compiled);
+		Assertions.assertEquals(30, fused.numNetworks());
+		var inputs = new double[20][];
+		for(var i = 0; i < inputs.length; i++)
+		{
+			inputs[i] = new double[] { random.nextDouble(), random.nextDouble() * 2 - 1,
+					random.nextInt(2) };
+		}
+		var outputs = fused.evaluateBatch(inputs);
+		for(var network = 0; network < compiled.size(); network++)
+		{
+			for(var i = 0; i < inputs.length; i++)
+			{
+				Assertions.assertArrayEquals(compiled.get(network).evaluate(inputs[i]),
+					outputs[network][i]);
+			}
+		}
+		var other = CompiledNetwork.builder().withInputs(2).withOutputs(2).build();
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> FusedNetworks.of(List.of(compiled.get(0), other)));
+	}
+
+	@Test
+	public void testRecurrent()
+	{
+		// inputs[0] outputs[1] biases[2] hidden[3, 4], with a cycle between 3 and 4
+		var compiled = CompiledNetwork.builder().withRecurrency(true).withConnection(0, 3, 1)
+			.withConnection(3, 4, 2).withConnection(4, 3, -1).withConnection(4, 1, 1)
+			.withConnection(2, 4, 0.5).build();
+		var state = compiled.newState();
+		var outputs = new double[1];
+		var hidden3 = 0d;
+		var hidden4 = 0d;
+		var results = new double[20];
+		for(var step = 0; step < results.length; step++)
+		{
+			var input = Math.sin(step);
+			state.step(new double[] { input }, outputs);
+			var output = sigmoid(hidden4);
+			var next3 = sigmoid(input - hidden4);
+			hidden4 = sigmoid(2 * hidden3 + 0.5);
+			hidden3 = next3;
+			Assertions.assertEquals(output, outputs[0], 1e-12);
+			results[step] = outputs[0];
+		}
+		state.resetState();
+		for(var step = 0; step < results.length; step++)
+		{
+			state.step(new double[] { Math.sin(step) }, outputs);
+			Assertions.assertEquals(results[step], outputs[0]);
+		}
+		Assertions.assertThrows(UnsupportedOperationException.class,
+			() -> compiled.evaluate(new double[] { 1 }));
+		// a recurrent network keeps its activations between evaluations
+		var network = new Network(1, 1, 1, true);
+		var first = Neuron.newHidden();
+		var second = Neuron.newHidden();
+		network.addNeuron(first);
+		network.addNeuron(second);
+		network.addConnection(0, 3, 1);
+		network.addConnection(3, 4, 2);
+		network.addConnection(4, 3, -1);
+		network.addConnection(4, 1, 1);
+		network.addConnection(2, 4, 0.5);
+		for(var repeat = 0; repeat < 2; repeat++)
+		{
+			for(var step = 0; step < results.length; step++)
+			{
+				Assertions.assertEquals(results[step],
+					network.evaluate(new double[] { Math.sin(step) })[0]);
+			}
+			network.reset();
+		}
+		// rewiring a neuron directly compiles the network anew
+		network.evaluate(new double[] { 1 });
+		second.dropInput(first);
+		var rewired = network.compile().newState();
+		for(var step = 0; step < results.length; step++)
+		{
+			rewired.step(new double[] { Math.sin(step) }, outputs);
+			Assertions.assertEquals(outputs[0],
+				network.evaluate(new double[] { Math.sin(step) })[0]);
+		}
+	}
+
+	@Test
+	public void testGenerated()
+	{
+		var random = new Random(13);
+		for(var individual : evolvedIndividuals(20, 50))
+		{
+			var compiled = individual.genome().compile();
+			if(compiled.numConnections() > 500)
+			{
+				// too large to generate
+				continue;
+			}
+			var generated = compiled.generate();
+			var outputs = new double[generated.numOutputs()];
+			for(var i = 0; i < 10; i++)
+			{
+				var inputs = new double[] { random.nextDouble(), random.nextDouble() * 2 - 1,
+						random.nextInt(2) };
+				generated.evaluate(inputs, outputs);
+				Assertions.assertArrayEquals(compiled.evaluate(inputs), outputs);
+			}
+		}
+		var tanh = CompiledNetwork.builder().withActivation(Activations.TANH)
+			.withConnection(0, 3, 2).withConnection(2, 3, -1).withConnection(3, 1, 0.5).build();
+		Assertions.assertArrayEquals(tanh.evaluate(new double[] { 0.75 }),
+			tanh.generate().evaluate(new double[] { 0.75 }));
+		Assertions.assertThrows(UnsupportedOperationException.class,
+			() -> CompiledNetwork.builder().withRecurrency(true).build().generate());
+	}
+
+	@Test
+	public void testPruning()
+	{
+		// inputs[0, 1] outputs[2] biases[3]; 20 leads nowhere, and nothing leads to 30
+		var builder = CompiledNetwork.builder().withInputs(2).withOutputs(1).withConnection(0, 10, 1)
+			.withConnection(10, 2, -2).withConnection(1, 2, 1e-4).withConnection(0, 20, 3)
+			.withConnection(30, 2, 4);
+		var pruned = builder.build();
+		var unpruned = builder.withPruning(false).build();
+		var approximated = builder.withPruning(true).withMinimumWeight(1e-3).build();
+		Assertions.assertEquals(3, pruned.numConnections());
+		Assertions.assertEquals(5, unpruned.numConnections());
+		Assertions.assertEquals(2, approximated.numConnections());
+		var inputs = new double[] { 0.5, 1 };
+		Assertions.assertArrayEquals(unpruned.evaluate(inputs), pruned.evaluate(inputs));
+		Assertions.assertEquals(pruned.evaluate(inputs)[0], approximated.evaluate(inputs)[0], 1e-3);
+		var random = new Random(17);
+		for(var individual : evolvedIndividuals(20, 200))
+		{
+			pruned = individual.genome().compile();
+			unpruned = individual.genome().compiler().withPruning(false).build();
+			Assertions.assertTrue(pruned.numConnections() <= unpruned.numConnections());
+			for(var i = 0; i < 10; i++)
+			{
+				inputs = new double[] { random.nextDouble(), random.nextDouble(), random.nextInt(2) };
+				Assertions.assertArrayEquals(unpruned.evaluate(inputs), pruned.evaluate(inputs));
+			}
+		}
+		// neurons nothing leads to hold the activation at 0, as in Network
+		var logistic = (ActivationFunction) x -> 1 / (1 + Math.exp(-x));
+		var constants = CompiledNetwork.builder().withInputs(1).withOutputs(2)
+			.withActivation(logistic).withConnection(0, 1, 1).withConnection(10, 1, 2)
+			.withConnection(20, 10, 3);
+		for(var network : List.of(constants.build(), constants.withPruning(false).build()))
+		{
+			Assertions.assertArrayEquals(
+				new double[] { logistic.apply(0.5 + 2 * logistic.apply(0)), logistic.apply(0) },
+				network.evaluate(new double[] { 0.5 }), 1e-12);
+			Assertions.assertArrayEquals(network.evaluate(new double[] { 0.5 }),
+				network.evaluateBatch(new double[][] { { 0.5 } })[0]);
+			Assertions.assertArrayEquals(network.evaluate(new double[] { 0.5 }),
+				network.generate().evaluate(new double[] { 0.5 }), 1e-12);
+		}
+		// recurrent networks keep every neuron that a cycle lets reach an output
+		var recurrent = CompiledNetwork.builder().withRecurrency(true).withConnection(0, 3, 1)
+			.withConnection(3, 4, 2).withConnection(4, 3, -1).withConnection(4, 1, 1)
+			.withConnection(3, 5, 1).withConnection(6, 1, 1);
+		var prunedState = recurrent.build().newState();
+		var unprunedState = recurrent.withPruning(false).build().newState();
+		Assertions.assertEquals(4, prunedState.network().numConnections());
+		var prunedOutputs = new double[1];
+		var unprunedOutputs = new double[1];
+		for(var step = 0; step < 10; step++)
+		{
+			prunedState.step(new double[] { Math.cos(step) }, prunedOutputs);
+			unprunedState.step(new double[] { Math.cos(step) }, unprunedOutputs);
+			Assertions.assertArrayEquals(unprunedOutputs, prunedOutputs);
+		}
+	}
+
+	@Test
+	public void testCompiledFromNetwork()
+	{
+		for(var individual : evolvedIndividuals(20, 200))
+		{
+			var network = individual.genome().toNetwork(Neuron::newHidden);
+			var compiled = network.compile();
+			var inputs = new double[] { 0.25, -1, 1 };
+			Assertions.assertArrayEquals(network.evaluate(inputs), compiled.evaluate(inputs),
+				1e-12);
+		}
+	}
+
+	static NeuralIndividual[] evolvedIndividuals(int count, int mutations)
+	{
+		var networkParameters = NetworkParameters.builder().withInputs(3).withOutputs(2)
+			.withBiases(1).withRecurrency(false).withFullConnectivity(false).build();
+		var individualParameters = IndividualParameters.builder().build();
+		var tracker = new InnovationTracker();
+		var builder = NeuralIndividual.builder().withInnovationTracker(tracker)
+			.withNetworkParameters(networkParameters)
+			.withIndividualParameters(individualParameters);
+		var individuals = new NeuralIndividual[count];
+		for(var i = 0; i < count; i++)
+		{
+			individuals[i] = builder.build();
+			for(var j = 0; j < mutations; j++)
+			{
+				individuals[i].mutateComprehensively();
+			}
+		}
+		return individuals;
+	}
+
+	private static double sigmoid(double x)
+	{
+		return 2d / (1d + Math.exp(-4.9 * x)) - 1;
+	}
+}
@@ -1,7 +1,9 @@
 package test;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.DoubleStream;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -20,6 +22,7 @@ import genetic.selection.method.ElitistSelection;
 import genetic.selection.method.RankSelection;
 import genetic.selection.method.RouletteSelection;
 import test.binary.BinaryIndividual;
+import utils.RandomSource;
 
 public class GeneticAlgorithmTest
 {
@@ -56,6 +59,7 @@ public class GeneticAlgorithmTest
 			++generations;
 			selector.reset();
 			var ranked = ranker.rank(eval.evaluate(pop.stream())).collect(Collectors.toList());
+			selector.prepare(ranked);
 			// define repopulation
 			var repopulator = new RepopulatorImpl<>(BinaryIndividual::copy)
 			{
@@ -75,4 +79,50 @@ public class GeneticAlgorithmTest
 		Assertions.assertTrue(generations < 1000);
 		System.out.println("Genetic algorithm test completed in " + generations + " generations.");
 	}
+
+	@Test
+	public void testProportionalSelection()
+	{
+		RandomSource.seed(5);
+		assertFrequencies(new RouletteSelection<>(), true, List.of(-2, 0, 3, 5), 1, 3, 6, 8);
+		// ties are ranked in order
+		assertFrequencies(new RankSelection<>(), true, List.of(5, -1, 3, 3), 4, 1, 2, 3);
+		// unprepared, every list is read afresh
+		var roulette = new RouletteSelection<BinaryIndividual>();
+		assertFrequencies(roulette, false, List.of(1, 1, 1, 1), 1, 1, 1, 1);
+		assertFrequencies(roulette, false, List.of(1, 3, 1, 3), 1, 3, 1, 3);
+		roulette.prepare(List.of(new Evaluation<>(new BinaryIndividual(), 1)));
+		Assertions.assertThrows(IllegalStateException.class,
+			() -> roulette.selectIndividual(List.of(new Evaluation<>(new BinaryIndividual(), 1),
+				new Evaluation<>(new BinaryIndividual(), 2))));
+	}
+
+	private static void assertFrequencies(RouletteSelection<BinaryIndividual> selection,
+		boolean prepared, List<Integer> results, double... weights)
+	{
+		var ranked = results.stream()
+			.map(result -> new Evaluation<>(new BinaryIndividual(), result)).toList();
+		if(prepared)
+		{
+			selection.prepare(ranked);
+		}
+		var counts = new int[ranked.size()];
+		var draws = 200_000;
+		for(var i = 0; i < draws; i++)
+		{
+			var selected = selection.selectIndividual(ranked);
+			for(var index = 0; index < ranked.size(); index++)
+			{
+				if(ranked.get(index).individual() == selected)
+				{
+					counts[index]++;
+				}
+			}
+		}
+		var sum = DoubleStream.of(weights).sum();
+		for(var index = 0; index < counts.length; index++)
+		{
+			Assertions.assertEquals(weights[index] / sum, counts[index] / (double) draws, 0.01);
+		}
+	}
 }
@@ -1,13 +1,34 @@
 package test;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import neat.IndividualParameters;
 import neat.InnovationTracker;
 import neat.NetworkParameters;
+import neat.NeuralConnection;
+import neat.NeuralGene;
+import neat.NeuralGenome;
 import neat.NeuralIndividual;
+import neat.SpeciatedPopulation;
+import neat.SpeciationParameters;
+import neat.Species;
 import network.neuron.Neuron;
+import utils.GsonUtils;
+import utils.RandomSource;
 
 public class NeuralIndividualTest
 {
@@ -141,6 +162,531 @@ public class NeuralIndividualTest
 		Assertions.assertEquals(0, ind.genome().genes().size());
 	}
 
+	@Test
+	public void testReproducible()
+	{
+		RandomSource.seed(42);
+		var first = evolve(RandomSource.current().split());
+		RandomSource.seed(42);
+		Assertions.assertEquals(first, evolve(RandomSource.current().split()));
+		// tasks given their own streams up front don't depend on the thread
+		RandomSource.seed(7);
+		var seeds = IntStream.range(0, 16).mapToLong(i -> RandomSource.current().nextLong())
+			.boxed().toList();
+		var sequential = seeds.stream().map(SplittableRandom::new).map(this::evolve).toList();
+		var parallel = seeds.parallelStream().map(SplittableRandom::new).map(this::evolve)
+			.toList();
+		Assertions.assertEquals(sequential, parallel);
+	}
+
+	private List<NeuralGene> evolve(SplittableRandom random)
+	{
+		return RandomSource.with(random, () ->
+		{
+			var networkParameters = NetworkParameters.builder().withInputs(3).withOutputs(2)
+				.withBiases(1).build();
+			var ind = NeuralIndividual.builder().withInnovationTracker(new InnovationTracker())
+				.withNetworkParameters(networkParameters)
+				.withIndividualParameters(IndividualParameters.builder().build()).build();
+			for(var i = 0; i < 30; i++)
+			{
+				ind.mutateComprehensively();
+			}
+			return List.copyOf(ind.genome().genes());
+		});
+	}
+
+	@Test
+	public void testConcurrentTracker()
+	{
+		var tracker = new InnovationTracker();
+		// every connection is asked for by several threads at once
+		var markers = IntStream.range(0, 80_000).parallel()
+			.mapToLong(i -> tracker.getMarker(i % 100, i / 100 % 100)).toArray();
+		for(var i = 0; i < markers.length; i++)
+		{
+			Assertions.assertEquals(tracker.getMarker(i % 100, i / 100 % 100), markers[i]);
+		}
+		Assertions.assertEquals(10_000, IntStream.range(0, 10_000)
+			.mapToLong(i -> tracker.getMarker(i % 100, i / 100)).distinct().count());
+		Assertions.assertEquals(10_000, tracker.getMarker(100, 0));
+		// innovations survive being saved and loaded
+		var gson = GsonUtils.gsonBuilder().create();
+		var read = gson.fromJson(gson.toJson(tracker), InnovationTracker.class);
+		Assertions.assertEquals(tracker.getMarker(42, 7), read.getMarker(42, 7));
+		Assertions.assertEquals(10_001, read.getMarker(100, 1));
+		// as well as trackers saved before it had stripes
+		var legacy = gson.fromJson("{\"marker\":5,\"genes\":{\"1\":{\"3\":4}}}",
+			InnovationTracker.class);
+		Assertions.assertEquals(4, legacy.getMarker(1, 3));
+		Assertions.assertEquals(5, legacy.getMarker(2, 3));
+		tracker.reset();
+		Assertions.assertEquals(10_001, tracker.getMarker(0, 0));
+	}
+
+	@Test
+	public void testPerturbation()
+	{
+		for(var probability : new double[] { 0, 0.1, 1 })
+		{
+			var networkParameters = NetworkParameters.builder().withInputs(50).withOutputs(40)
+				.withBiases(0).withStep(0.05).withPerturbationProbability(probability).build();
+			var tracker = new InnovationTracker();
+			var ind = NeuralIndividual.builder().withInnovationTracker(tracker)
+				.withNetworkParameters(networkParameters)
+				.withIndividualParameters(IndividualParameters.builder().build()).build();
+			var genome = ind.genome();
+			genome.becomeFullyConnected(tracker);
+			var before = genome.copy();
+			ind.mutateWeight();
+			var changed = 0;
+			for(var i = 0; i < genome.genes().size(); i++)
+			{
+				var difference = genome.genes().get(i).weight() - before.genes().get(i).weight();
+				Assertions.assertTrue(Math.abs(difference) <= 0.05);
+				changed += difference == 0 ? 0 : 1;
+			}
+			// 2000 genes, so within 5 standard deviations of the expected count
+			var expected = probability * genome.genes().size();
+			var deviation = Math.sqrt(expected * (1 - probability));
+			Assertions.assertTrue(Math.abs(changed - expected) <= 5 * deviation + 1,
+				"Changed %s of %s weights".formatted(changed, genome.genes().size()));
+		}
+	}
+
+	@Test
+	public void testEnableDisable()
+	{
+		var networkParameters = NetworkParameters.builder().withInputs(2).withOutputs(2)
+			.withBiases(0).withRecurrency(false).withFullConnectivity(false).build();
+		var individualParameters = IndividualParameters.builder().build();
+		var tracker = new InnovationTracker();
+		var ind = NeuralIndividual.builder().withInnovationTracker(tracker)
+			.withNetworkParameters(networkParameters)
+			.withIndividualParameters(individualParameters).build();
+		var genome = ind.genome();
+		// inputs[0, 1] outputs[2, 3]
+		genome.addConnection(0, 2, 1, tracker);
+		genome.addConnection(0, 3, 1, tracker);
+		genome.addConnection(1, 2, 1, tracker);
+		for(var i = 0; i < 100; i++)
+		{
+			ind.mutateDisable();
+		}
+		// neuron 1 keeps its only link, and neuron 0 keeps one of its two
+		Assertions.assertTrue(genome.getConnection(1, 2).get().enabled());
+		Assertions.assertEquals(1, genome.genes().stream().filter(gene -> gene.from() == 0)
+			.filter(NeuralGene::enabled).count());
+		ind.mutateEnable();
+		Assertions.assertTrue(genome.genes().stream().allMatch(NeuralGene::enabled));
+		ind.mutateDestroy();
+		Assertions.assertEquals(3, genome.genes().size());
+		genome.updateGene(0, genome.genes().get(0).withEnabled(false));
+		ind.mutateDestroy();
+		Assertions.assertEquals(2, genome.genes().size());
+		Assertions.assertFalse(genome.hasConnection(0, 2));
+	}
+
+	@Test
+	public void testGeneStorage()
+	{
+		var networkParameters = NetworkParameters.builder().withInputs(2).withOutputs(1)
+			.withBiases(1).withRecurrency(false).withFullConnectivity(false).build();
+		var tracker = new InnovationTracker();
+		var genome = new NeuralGenome(networkParameters);
+		genome.becomeFullyConnected(tracker);
+		genome.addConnection(1, 2, 0.5, false, tracker);
+		var genes = genome.genes();
+		Assertions.assertEquals(3, genes.size());
+		Assertions.assertEquals(0.5, genome.getConnection(1, 2).get().weight());
+		Assertions.assertFalse(genome.getConnection(1, 2).get().enabled());
+		for(var i = 1; i < genes.size(); i++)
+		{
+			Assertions.assertTrue(genes.get(i - 1).marker() < genes.get(i).marker());
+		}
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> genes.set(0, genes.get(1)));
+		Assertions.assertThrows(UnsupportedOperationException.class,
+			() -> genes.add(0, genes.get(1)));
+		Assertions.assertEquals(genes.get(2), genome.getConnection(3, 2).get());
+		var first = genes.remove(0);
+		genes.add(first);
+		Assertions.assertEquals(first, genes.get(0));
+		genes.remove(2);
+		Assertions.assertFalse(genome.hasConnection(3, 2));
+		Assertions.assertTrue(genome.hasConnection(0, 2));
+		genes.removeIf(gene -> gene.from() == 1);
+		Assertions.assertFalse(genome.hasConnection(1, 2));
+		Assertions.assertEquals(genes.get(0), genome.getConnection(0, 2).get());
+		var copy = genome.copy();
+		Assertions.assertEquals(genes, copy.genes());
+		copy.addConnection(1, 2, 1, tracker);
+		Assertions.assertEquals(1, genes.size());
+		Assertions.assertEquals(2, copy.genes().size());
+		var shared = copy.copy();
+		shared.genes().set(0, shared.genes().get(0).withWeight(-1));
+		Assertions.assertNotEquals(-1, copy.genes().get(0).weight());
+		copy.genes().remove(1);
+		Assertions.assertEquals(2, shared.genes().size());
+		Assertions.assertTrue(shared.hasConnection(1, 2));
+		Assertions.assertFalse(copy.hasConnection(1, 2));
+		var json = GsonUtils.gsonBuilder().create().toJson(copy);
+		var read = GsonUtils.gsonBuilder().create().fromJson(json, NeuralGenome.class);
+		Assertions.assertEquals(copy.genes(), read.genes());
+		Assertions.assertEquals(copy.connectionGenes(), read.connectionGenes());
+		// connection genes are a read-only view that follows the genome
+		var connectionGenes = shared.connectionGenes();
+		shared.genes().remove(0);
+		Assertions.assertEquals(shared.genes().size(), connectionGenes.size());
+		Assertions.assertEquals(shared.genes().get(0), connectionGenes.get(new NeuralConnection(
+			shared.genes().get(0).from(), shared.genes().get(0).to())));
+		Assertions.assertThrows(UnsupportedOperationException.class,
+			() -> connectionGenes.put(new NeuralConnection(0, 1), shared.genes().get(0)));
+		Assertions.assertThrows(UnsupportedOperationException.class, connectionGenes::clear);
+	}
+
+	@Test
+	public void testConnectionIndex()
+	{
+		var networkParameters = NetworkParameters.builder().withInputs(2).withOutputs(1)
+			.withBiases(1).withRecurrency(true).withFullConnectivity(false).build();
+		var tracker = new InnovationTracker();
+		var genome = new NeuralGenome(networkParameters);
+		var genes = genome.genes();
+		var connections = new HashSet<Long>();
+		var random = new Random(0);
+		for(var i = 0; i < 20_000; i++)
+		{
+			var from = random.nextInt(64);
+			var to = random.nextInt(64);
+			if(random.nextInt(3) > 0)
+			{
+				genome.addConnection(from, to, i, tracker);
+				connections.add((long) from << 32 | to);
+				Assertions.assertEquals(i, genome.getConnection(from, to).get().weight());
+			}
+			else if(!genes.isEmpty())
+			{
+				var gene = genes.remove(random.nextInt(genes.size()));
+				connections.remove((long) gene.from() << 32 | gene.to());
+				Assertions.assertFalse(genome.hasConnection(gene.from(), gene.to()));
+			}
+			Assertions.assertEquals(connections.size(), genes.size());
+		}
+		for(var from = 0; from < 64; from++)
+		{
+			for(var to = 0; to < 64; to++)
+			{
+				Assertions.assertEquals(connections.contains((long) from << 32 | to),
+					genome.hasConnection(from, to));
+			}
+		}
+	}
+
+	@Test
+	public void testCycles()
+	{
+		var networkParameters = NetworkParameters.builder().withInputs(2).withOutputs(1)
+			.withBiases(1).withRecurrency(true).withFullConnectivity(false).build();
+		var tracker = new InnovationTracker();
+		var random = new Random(1);
+		for(var trial = 0; trial < 20; trial++)
+		{
+			var genome = new NeuralGenome(networkParameters);
+			var genes = genome.genes();
+			for(var i = 0; i < 300; i++)
+			{
+				var from = random.nextInt(40);
+				var to = random.nextInt(40);
+				Assertions.assertEquals(reaches(genome, to, from), genome.createsCycle(from, to));
+				if(random.nextInt(4) == 0 && !genes.isEmpty())
+				{
+					var index = random.nextInt(genes.size());
+					genome.updateGene(index, genes.get(index).withEnabled(!genes.get(index).enabled()));
+				}
+				else if(random.nextInt(8) == 0 && !genes.isEmpty())
+				{
+					genes.remove(random.nextInt(genes.size()));
+				}
+				else if(trial % 2 == 0 || !genome.createsCycle(from, to))
+				{
+					genome.addConnection(from, to, tracker);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCompactNeurons()
+	{
+		var networkParameters = NetworkParameters.builder().withInputs(2).withOutputs(1)
+			.withBiases(1).withRecurrency(false).withFullConnectivity(true).build();
+		var tracker = new InnovationTracker();
+		var builder = NeuralIndividual.builder().withInnovationTracker(tracker)
+			.withNetworkParameters(networkParameters)
+			.withIndividualParameters(IndividualParameters.builder().build());
+		var population = new ArrayList<NeuralIndividual>();
+		for(var i = 0; i < 20; i++)
+		{
+			var ind = builder.build();
+			for(var j = 0; j < 30; j++)
+			{
+				ind.mutateNeuron();
+				ind.mutateLink();
+				if(j % 3 == 0)
+				{
+					ind.mutateDestroy();
+				}
+			}
+			population.add(ind);
+		}
+		var inputs = new double[] { 0.25, -0.5 };
+		var outputs = population.stream().map(ind -> ind.genome().compile().evaluate(inputs))
+			.toList();
+		var markers = population.stream()
+			.map(ind -> ind.genome().genes().stream().map(NeuralGene::marker).toList()).toList();
+		var innovation = population.get(0).genome().genes().get(0);
+		NeuralIndividual.compactNeurons(population);
+		var used = new TreeSet<Integer>();
+		for(var i = 0; i < population.size(); i++)
+		{
+			var genome = population.get(i).genome();
+			Assertions.assertArrayEquals(outputs.get(i), genome.compile().evaluate(inputs), 1e-12);
+			Assertions.assertEquals(markers.get(i),
+				genome.genes().stream().map(NeuralGene::marker).toList());
+			for(var gene : genome.genes())
+			{
+				Assertions.assertTrue(gene.from() < genome.neurons() && gene.to() < genome.neurons());
+				Assertions.assertEquals(gene, genome.getConnection(gene.from(), gene.to()).get());
+				used.add(gene.from());
+				used.add(gene.to());
+			}
+		}
+		// hidden ids are dense, and the tracker still knows the renamed innovations
+		used.removeIf(neuron -> neuron < 4);
+		Assertions.assertEquals(IntStream.range(4, 4 + used.size()).boxed().toList(),
+			List.copyOf(used));
+		var renamed = population.get(0).genome().genes().get(0);
+		Assertions.assertEquals(innovation.marker(), renamed.marker());
+		Assertions.assertEquals(renamed.marker(), tracker.getMarker(renamed.from(), renamed.to()));
+	}
+
+	@Test
+	public void testBoundedDifference()
+	{
+		var networkParameters = NetworkParameters.builder().withInputs(3).withOutputs(2)
+			.withBiases(1).withRecurrency(false).withFullConnectivity(true).build();
+		var tracker = new InnovationTracker();
+		var builder = NeuralIndividual.builder().withInnovationTracker(tracker)
+			.withNetworkParameters(networkParameters)
+			.withIndividualParameters(IndividualParameters.builder().build());
+		var population = new ArrayList<NeuralIndividual>();
+		for(var i = 0; i < 30; i++)
+		{
+			var ind = builder.build();
+			for(var j = 0; j < i * 3; j++)
+			{
+				ind.mutateNeuron();
+				ind.mutateLink();
+				ind.mutateWeight();
+			}
+			population.add(ind);
+		}
+		for(var power : new double[] { 1, 2, 0.5 })
+		{
+			var parameters = SpeciationParameters.builder().withExcessCoefficient(1)
+				.withDisjointCoefficient(power).withWeightDifferenceCoefficient(0.4)
+				.withWeightDifferencePower(power).build();
+			for(var first : population)
+			{
+				for(var second : population)
+				{
+					var difference = first.difference(second, parameters);
+					for(var bound : new double[] { 0.1, 0.5, 1, 3 })
+					{
+						var bounded = first.difference(second, parameters, bound);
+						if(difference < bound)
+						{
+							Assertions.assertEquals(difference, bounded);
+						}
+						else
+						{
+							Assertions.assertTrue(bounded >= bound && bounded <= difference + 1e-9);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testSpeciation()
+	{
+		var networkParameters = NetworkParameters.builder().withInputs(3).withOutputs(2)
+			.withBiases(1).withRecurrency(false).withFullConnectivity(true).build();
+		var builder = NeuralIndividual.builder().withInnovationTracker(new InnovationTracker())
+			.withNetworkParameters(networkParameters)
+			.withIndividualParameters(IndividualParameters.builder().build());
+		var random = new Random(3);
+		Supplier<NeuralIndividual> generator = () ->
+		{
+			var ind = builder.build();
+			for(var i = random.nextInt(8); i > 0; i--)
+			{
+				ind.mutateNeuron();
+				ind.mutateLink();
+				ind.mutateWeight();
+			}
+			return ind;
+		};
+		var parameters = SpeciationParameters.builder().withExcessCoefficient(1)
+			.withDisjointCoefficient(1).withWeightDifferenceCoefficient(0.4)
+			.withWeightDifferencePower(1).withDifferenceThreshold(1).withDesiredSpecies(10).build();
+		var pop = SpeciatedPopulation.<NeuralIndividual, Double>builder().withSize(200)
+			.withGenerator(generator).withParameters(parameters)
+			.withFitnessMeasure(species -> 0d).build();
+		for(var round = 0; round < 3; round++)
+		{
+			var threshold = pop.speciationParameters().differenceThreshold();
+			var before = Collections.newSetFromMap(new IdentityHashMap<Species<?, ?>, Boolean>());
+			before.addAll(pop.species());
+			var individuals = Stream.generate(generator).limit(200).toList();
+			// some individuals claim to come from an existing species
+			var hints = new IdentityHashMap<NeuralIndividual, Species<?, ?>>();
+			for(var ind : individuals)
+			{
+				if(!pop.species().isEmpty() && random.nextBoolean())
+				{
+					ind.parentSpecies(pop.species().get(random.nextInt(pop.species().size())));
+					hints.put(ind, ind.parentSpecies());
+				}
+			}
+			pop.updateSpecies(individuals.stream());
+			// classify one at a time against the species that survived, which
+			// keep their order, existing ones first
+			var species = pop.species();
+			var existing = (int) species.stream().filter(before::contains).count();
+			var available = existing;
+			for(var ind : individuals)
+			{
+				Assertions.assertNull(ind.parentSpecies());
+				var expected = available;
+				var hint = species.indexOf(hints.get(ind));
+				if(hint >= 0 && hint < existing
+					&& species.get(hint).representative().difference(ind, parameters) < threshold)
+				{
+					expected = hint;
+				}
+				for(var index = 0; index < available && expected == available; index++)
+				{
+					if(species.get(index).representative().difference(ind, parameters) < threshold)
+					{
+						expected = index;
+					}
+				}
+				if(expected == available)
+				{
+					Assertions.assertSame(ind, species.get(available++).representative());
+				}
+				Assertions.assertTrue(species.get(expected).stream().anyMatch(t -> t == ind));
+			}
+			Assertions.assertEquals(species.size(), available);
+		}
+	}
+
+	@Test
+	public void testMarkerSketch()
+	{
+		RandomSource.seed(11);
+		var networkParameters = NetworkParameters.builder().withInputs(3).withOutputs(2)
+			.withBiases(1).withRecurrency(false).withFullConnectivity(true).build();
+		var tracker = new InnovationTracker();
+		var builder = NeuralIndividual.builder().withInnovationTracker(tracker)
+			.withNetworkParameters(networkParameters)
+			.withIndividualParameters(IndividualParameters.builder().build());
+		var population = new ArrayList<NeuralIndividual>();
+		for(var i = 0; i < 40; i++)
+		{
+			var ind = builder.build();
+			for(var j = 0; j < i; j++)
+			{
+				ind.mutateNeuron();
+				ind.mutateLink();
+			}
+			population.add(ind);
+		}
+		var parameters = SpeciationParameters.builder().withExcessCoefficient(1)
+			.withDisjointCoefficient(1).withWeightDifferenceCoefficient(0.4)
+			.withWeightDifferencePower(1).withSketchSize(64).withFalseRejectionRate(0.01).build();
+		var within = 0;
+		var rejected = 0;
+		var pruned = 0;
+		for(var first : population)
+		{
+			for(var second : population)
+			{
+				var close = first.difference(second, parameters) < 1;
+				var kept = first.mayDifferBelow(second, parameters, 1);
+				within += close ? 1 : 0;
+				rejected += close && !kept ? 1 : 0;
+				pruned += !close && !kept ? 1 : 0;
+			}
+		}
+		Assertions.assertTrue(rejected <= Math.max(1, within / 20));
+		Assertions.assertTrue(pruned > 0);
+		Assertions.assertThrows(IllegalArgumentException.class,
+			() -> SpeciationParameters.builder().withSketchSize(-1));
+		for(var rate : new double[] { 0, -0.5, 1.5, Double.NaN })
+		{
+			Assertions.assertThrows(IllegalArgumentException.class,
+				() -> SpeciationParameters.builder().withFalseRejectionRate(rate));
+		}
+		// sketches follow added and removed genes, so identical genomes agree exactly
+		var exact = SpeciationParameters.builder().withExcessCoefficient(1)
+			.withDisjointCoefficient(1).withSketchSize(64).withFalseRejectionRate(1).build();
+		var ind = population.get(10);
+		for(var i = 0; i < 20; i++)
+		{
+			if(i % 4 == 0)
+			{
+				ind.mutateDestroy();
+			}
+			else
+			{
+				ind.mutateNeuron();
+			}
+			var fresh = builder.build();
+			fresh.genome().genes().clear();
+			for(var gene : ind.genome().genes())
+			{
+				fresh.genome().addConnection(gene.from(), gene.to(), gene.weight(), gene.enabled(),
+					tracker);
+			}
+			Assertions.assertTrue(ind.mayDifferBelow(fresh, exact, 1e-9));
+		}
+	}
+
+	private static boolean reaches(NeuralGenome genome, int source, int target)
+	{
+		var visited = new HashSet<Integer>();
+		var queue = new ArrayDeque<Integer>();
+		queue.add(source);
+		while(!queue.isEmpty())
+		{
+			var current = queue.poll();
+			if(current == target)
+			{
+				return true;
+			}
+			if(visited.add(current))
+			{
+				genome.genes().stream().filter(gene -> gene.enabled() && gene.from() == current)
+					.forEach(gene -> queue.add(gene.to()));
+			}
+		}
+		return false;
+	}
+
 	private boolean inRange(long num, long low, long high)
 	{
 		return low <= num && num <= high;
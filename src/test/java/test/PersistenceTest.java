@@ -90,22 +90,22 @@ public class PersistenceTest
 		// define evaluator
 		var eval = Evaluator.<NeuralIndividual, Double>of(b ->
 		{
-			var network = b.genome().toNetwork(Neuron::newHidden);
+			var network = b.genome().compile();
+			var inputs = new double[][] {
+					{ 0, 0, 0 }, { 0, 0, 1 }, { 0, 1, 0 }, { 0, 1, 1 },
+					{ 1, 0, 0 }, { 1, 0, 1 }, { 1, 1, 0 }, { 1, 1, 1 }
+			};
 			var expected = new double[][] {
-					{ 0, 0, 0 }, { 0 },
-					{ 0, 0, 1 }, { 1 },
-					{ 0, 1, 0 }, { 1 },
-					{ 0, 1, 1 }, { 0 },
-					{ 1, 0, 0 }, { 1 },
-					{ 1, 0, 1 }, { 0 },
-					{ 1, 1, 0 }, { 0 },
-					{ 1, 1, 1 }, { 1 }
+					{ 0 }, { 1 }, { 1 }, { 0 },
+					{ 1 }, { 0 }, { 0 }, { 1 }
 			};
+			// every case is evaluated in one pass over the network
+			var evaluations = network.evaluateBatch(inputs);
 			var sse = 0d;
-			for(var i = 0; i < expected.length; i += 2)
+			for(var i = 0; i < expected.length; i++)
 			{
-				var evaluation = network.evaluate(expected[i]);
-				var target = expected[i + 1];
+				var evaluation = evaluations[i];
+				var target = expected[i];
 				for(var j = 0; j < target.length; j++)
 				{
 					target[j] -= (evaluation[j] + 1) / 2.0; // calculate errors
@@ -16,6 +16,7 @@ import genetic.selection.method.ElitistSelection;
 import genetic.selection.method.RankSelection;
 import genetic.selection.method.RouletteSelection;
 import neat.FitnessMeasure;
+import neat.FusedEvaluator;
 import neat.IndividualParameters;
 import neat.InnovationTracker;
 import neat.NetworkParameters;
@@ -83,22 +84,22 @@ public class XORTest
 		// define evaluator
 		var eval = Evaluator.<NeuralIndividual, Double>of(b ->
 		{
-			var network = b.genome().toNetwork(Neuron::newHidden);
+			var network = b.genome().compile();
+			var inputs = new double[][] {
+					{ 0, 0, 0 }, { 0, 0, 1 }, { 0, 1, 0 }, { 0, 1, 1 },
+					{ 1, 0, 0 }, { 1, 0, 1 }, { 1, 1, 0 }, { 1, 1, 1 }
+			};
 			var expected = new double[][] {
-					{ 0, 0, 0 }, { 0 },
-					{ 0, 0, 1 }, { 1 },
-					{ 0, 1, 0 }, { 1 },
-					{ 0, 1, 1 }, { 0 },
-					{ 1, 0, 0 }, { 1 },
-					{ 1, 0, 1 }, { 0 },
-					{ 1, 1, 0 }, { 0 },
-					{ 1, 1, 1 }, { 1 }
+					{ 0 }, { 1 }, { 1 }, { 0 },
+					{ 1 }, { 0 }, { 0 }, { 1 }
 			};
+			// every case is evaluated in one pass over the network
+			var evaluations = network.evaluateBatch(inputs);
 			var sse = 0d;
-			for(var i = 0; i < expected.length; i += 2)
+			for(var i = 0; i < expected.length; i++)
 			{
-				var evaluation = network.evaluate(expected[i]);
-				var target = expected[i + 1];
+				var evaluation = evaluations[i];
+				var target = expected[i];
 				for(var j = 0; j < target.length; j++)
 				{
 					target[j] -= (evaluation[j] + 1) / 2.0; // calculate errors
@@ -248,29 +249,29 @@ public class XORTest
 			.withNetworkParameters(networkParameters)
 			.withIndividualParameters(individualParameters);
 		// define evaluator
-		var eval = Evaluator.<NeuralIndividual, Double>of(b ->
-		{
-			var network = b.genome().toNetwork(Neuron::newHidden);
-			var expected = new double[][] {
-					{ 0, 0 }, { 0 },
-					{ 0, 1 }, { 1 },
-					{ 1, 0 }, { 1 },
-					{ 1, 1 }, { 0 }
-			};
-			var sse = 0d;
-			for(var i = 0; i < expected.length; i += 2)
+		var inputs = new double[][] {
+				{ 0, 0 }, { 0, 1 }, { 1, 0 }, { 1, 1 }
+		};
+		var expected = new double[][] {
+				{ 0 }, { 1 }, { 1 }, { 0 }
+		};
+		// the whole population is evaluated on each case in one sweep
+		var eval = Evaluator.<NeuralIndividual, Double>ofMulti(new FusedEvaluator<>(inputs,
+			evaluations ->
 			{
-				var evaluation = network.evaluate(expected[i]);
-				var target = expected[i + 1];
-				for(var j = 0; j < target.length; j++)
+				var sse = 0d;
+				for(var i = 0; i < expected.length; i++)
 				{
-					target[j] -= (evaluation[j] + 1) / 2.0; // calculate errors
-					target[j] *= target[j]; // square errors
-					sse += target[j];
+					var evaluation = evaluations[i];
+					var target = expected[i];
+					for(var j = 0; j < target.length; j++)
+					{
+						var error = target[j] - (evaluation[j] + 1) / 2.0; // calculate errors
+						sse += error * error; // square errors
+					}
 				}
-			}
-			return 4 - sse;
-		});
+				return 4 - sse;
+			}));
 		// define crossover
 		var crossover = (CrossoverMethod<NeuralIndividual>) NeuralIndividual::crossover;
 		// define mutation(s)